@@ -16,10 +16,18 @@
 
 package it.unipi.di;
 
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongIterators;
+
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Comparator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 /**
  * The <tt>AbstractMonotoneLongSequence</tt> class represents defines a sequence of
@@ -47,24 +55,240 @@ public abstract class AbstractMonotoneLongSequence implements List<Long> {
   public abstract void clear();
 
   /**
-   * Iterator over the whole sequence.
+   * Iterator over the whole sequence. The returned iterator decodes the integers without boxing
+   * them when accessed through {@link LongIterator#nextLong()}.
    * 
    * @return an iterator over the whole sequence.
-   * @see java.util.Iterator
+   * @see it.unimi.dsi.fastutil.longs.LongIterator
    */
   @Override
-  public abstract Iterator<Long> iterator();
+  public abstract LongIterator iterator();
 
   /**
-   * Iterator over a specified range of the sequence.
+   * Iterator over a specified range of the sequence. The returned iterator decodes the integers
+   * without boxing them when accessed through {@link LongIterator#nextLong()}.
    * 
    * @param from the starting position.
    * @param to the ending position.
    * @return the integers of the sequence in proper order from <tt>from</tt> to <tt>to</tt>
    *         included.
-   * @see java.util.Iterator
+   * @see it.unimi.dsi.fastutil.longs.LongIterator
+   */
+  public abstract LongIterator iterator(final int from, final int to);
+
+  /**
+   * Iterator over the integers of the sequence whose values lie in between <tt>lo</tt> and
+   * <tt>hi</tt>, both included. The positions of the first and last matching integers are located
+   * with {@link #rank(long)}, hence buckets outside the range are skipped and only the matching
+   * span of the sequence is decoded.
+   * 
+   * @param lo the lower end of the range of values.
+   * @param hi the upper end of the range of values.
+   * @return the integers of the sequence in proper order from <tt>lo</tt> to <tt>hi</tt> included.
+   * @see it.unimi.dsi.fastutil.longs.LongIterator
+   */
+  public final LongIterator valueRangeIterator(final long lo, final long hi) {
+    if (lo > hi) {
+      return LongIterators.EMPTY_ITERATOR;
+    }
+    final int from = rank(lo);
+    final int to = rankLEQ(hi) - 1;
+    return from <= to ? iterator(from, to) : LongIterators.EMPTY_ITERATOR;
+  }
+
+  /**
+   * Decodes <tt>count</tt> consecutive integers of the sequence, starting from position
+   * <tt>from</tt>, into the given buffer.
+   * 
+   * @param from the starting position.
+   * @param dest the buffer to be filled.
+   * @param destOffset the position of the buffer where to write the first integer.
+   * @param count the number of integers to be decoded.
+   * @throws IndexOutOfBoundsException if bounds are incorrect.
+   */
+  public void decode(final int from, final long[] dest, final int destOffset, final int count) {
+    checkDecodeBounds(from, dest, destOffset, count);
+    if (count == 0) {
+      return;
+    }
+    LongIterator it = iterator(from, from + count - 1);
+    for (int i = 0; i < count; i++) {
+      dest[destOffset + i] = it.nextLong();
+    }
+  }
+
+  /**
+   * Iterator over the whole sequence that decodes the integers one block at a time by means of
+   * {@link #decode(int, long[], int, int)}.
+   * 
+   * @return a block iterator over the whole sequence.
+   */
+  public final MonotoneLongSequenceBlockIterator blockIterator() {
+    return new MonotoneLongSequenceBlockIterator() {
+      int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < length;
+      }
+
+      @Override
+      public int next(final long[] dest, final int destOffset, final int count) {
+        final int n = Math.min(count, length - next);
+        decode(next, dest, destOffset, n);
+        next += n;
+        return n;
+      }
+    };
+  }
+
+  /**
+   * Spliterator over the whole sequence. The returned spliterator reports the <tt>ORDERED</tt>,
+   * <tt>SORTED</tt>, <tt>SIZED</tt>, <tt>SUBSIZED</tt> and <tt>NONNULL</tt> characteristics,
+   * decodes the integers one block at a time and splits at the positions given by
+   * {@link #splitPoint(int, int)}.
+   * 
+   * @return a spliterator over the whole sequence.
+   */
+  @Override
+  public final Spliterator.OfLong spliterator() {
+    return new MonotoneLongSequenceSpliterator(0, length);
+  }
+
+  /**
+   * Sequential stream over the integers of the sequence, without boxing.
+   * 
+   * @return a sequential stream over the integers of the sequence.
+   */
+  public final LongStream longStream() {
+    return StreamSupport.longStream(spliterator(), false);
+  }
+
+  /**
+   * Parallel stream over the integers of the sequence, without boxing.
+   * 
+   * @return a parallel stream over the integers of the sequence.
+   */
+  public final LongStream parallelLongStream() {
+    return StreamSupport.longStream(spliterator(), true);
+  }
+
+  /**
+   * Returns the position at which a spliterator covering the positions in between <tt>from</tt>
+   * (included) and <tt>to</tt> (excluded) should be split. Subclasses override this method to
+   * split on the boundaries of their internal blocks.
+   * 
+   * @param from the starting position.
+   * @param to the ending position, excluded.
+   * @return the split position: if it is not strictly in between <tt>from</tt> and <tt>to</tt>
+   *         the range is not split.
    */
-  public abstract Iterator<Long> iterator(final int from, final int to);
+  protected int splitPoint(final int from, final int to) {
+    return (from + to) >>> 1;
+  }
+
+  private final class MonotoneLongSequenceSpliterator implements Spliterator.OfLong {
+    // Number of integers decoded at once.
+    static final int BLOCK_SIZE = 256;
+
+    int next;
+    final int to;
+    long[] block;
+    int blockNext = 0;
+    int blockEnd = 0;
+
+    MonotoneLongSequenceSpliterator(final int from, final int to) {
+      next = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(final LongConsumer action) {
+      if (blockNext == blockEnd) {
+        if (next == to) {
+          return false;
+        }
+        if (block == null) {
+          block = new long[BLOCK_SIZE];
+        }
+        blockEnd = Math.min(BLOCK_SIZE, to - next);
+        decode(next, block, 0, blockEnd);
+        next += blockEnd;
+        blockNext = 0;
+      }
+      action.accept(block[blockNext++]);
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(final LongConsumer action) {
+      while (blockNext < blockEnd) {
+        action.accept(block[blockNext++]);
+      }
+      if (next == to) {
+        return;
+      }
+      if (block == null) {
+        block = new long[BLOCK_SIZE];
+      }
+      while (next < to) {
+        final int n = Math.min(BLOCK_SIZE, to - next);
+        decode(next, block, 0, n);
+        for (int i = 0; i < n; i++) {
+          action.accept(block[i]);
+        }
+        next += n;
+      }
+    }
+
+    @Override
+    public Spliterator.OfLong trySplit() {
+      if (blockNext < blockEnd) { // traversal already started on a decoded block
+        return null;
+      }
+      final int mid = splitPoint(next, to);
+      if (mid <= next || mid >= to) {
+        return null;
+      }
+      Spliterator.OfLong prefix = new MonotoneLongSequenceSpliterator(next, mid);
+      next = mid;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return to - next + blockEnd - blockNext;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | SORTED | SIZED | SUBSIZED | NONNULL;
+    }
+
+    @Override
+    public Comparator<? super Long> getComparator() {
+      return null;
+    }
+  }
+
+  /**
+   * Checks for proper bounds of a decoding request.
+   * 
+   * @param from the starting position.
+   * @param dest the buffer to be filled.
+   * @param destOffset the position of the buffer where to write the first integer.
+   * @param count the number of integers to be decoded.
+   * @throws IndexOutOfBoundsException if bounds are incorrect.
+   */
+  protected final void checkDecodeBounds(final int from, final long[] dest, final int destOffset,
+      final int count) {
+    if (from < 0 || count < 0 || from > length - count) {
+      throw new IndexOutOfBoundsException(from + " + " + count);
+    }
+    if (destOffset < 0 || destOffset > dest.length - count) {
+      throw new IndexOutOfBoundsException("" + destOffset);
+    }
+  }
 
   /**
    * Checks for proper indices.
@@ -91,8 +315,17 @@ public abstract class AbstractMonotoneLongSequence implements List<Long> {
    * 
    * @param integer the to-be-appended value.
    */
+  public abstract boolean addLong(final long integer);
+
+  /**
+   * Add new integer to the sequence in proper position. Delegates to {@link #addLong(long)}.
+   * 
+   * @param integer the to-be-appended value.
+   */
   @Override
-  public abstract boolean add(final Long integer);
+  public final boolean add(final Long integer) {
+    return addLong(integer);
+  }
 
   /**
    * Add all integers in the specified collection if possible.
@@ -101,8 +334,20 @@ public abstract class AbstractMonotoneLongSequence implements List<Long> {
    */
   @Override
   public final boolean addAll(final Collection<? extends Long> c) {
-    for (Long i : c) {
-      add(i);
+    if (c instanceof LongCollection) {
+      LongIterator it = ((LongCollection) c).iterator();
+      while (it.hasNext()) {
+        addLong(it.nextLong());
+      }
+    } else if (c instanceof AbstractMonotoneLongSequence) {
+      LongIterator it = ((AbstractMonotoneLongSequence) c).iterator();
+      while (it.hasNext()) {
+        addLong(it.nextLong());
+      }
+    } else {
+      for (Long i : c) {
+        addLong(i);
+      }
     }
     return true;
   }
@@ -115,8 +360,20 @@ public abstract class AbstractMonotoneLongSequence implements List<Long> {
    * @throws IndexOutOfBoundsException if <tt>index</tt> is larger than the actual length of the
    *         sequence.
    */
+  public abstract long getLong(final int index);
+
+  /**
+   * Returns the integer at position <tt>index</tt>. Delegates to {@link #getLong(int)}.
+   * 
+   * @param index the index of the integer to be retrieved.
+   * @return the integer at position <tt>index</tt>.
+   * @throws IndexOutOfBoundsException if <tt>index</tt> is larger than the actual length of the
+   *         sequence.
+   */
   @Override
-  public abstract Long get(final int index);
+  public final Long get(final int index) {
+    return getLong(index);
+  }
 
   /**
    * Returns the smallest element of the sequence that is greater than or equal to the given
@@ -127,7 +384,143 @@ public abstract class AbstractMonotoneLongSequence implements List<Long> {
    * @return the smallest integer greater or equal to the one specified if it exists; <tt>-1</tt>
    *         otherwise.
    */
-  public abstract Long nextGEQ(final long integer);
+  public abstract long nextGEQLong(final long integer);
+
+  /**
+   * Returns the smallest element of the sequence that is greater than or equal to the given
+   * integer. Returns <tt>-1</tt> if such value is not found. Delegates to
+   * {@link #nextGEQLong(long)}.
+   * 
+   * @param integer the integer for which we want to compute its smallest greater or equal value in
+   *        the sequence.
+   * @return the smallest integer greater or equal to the one specified if it exists; <tt>-1</tt>
+   *         otherwise.
+   */
+  public final Long nextGEQ(final long integer) {
+    return nextGEQLong(integer);
+  }
+
+  /**
+   * Returns the number of integers of the sequence that are strictly smaller than the given one.
+   * The default implementation performs a binary search over {@link #getLong(int)}.
+   * 
+   * @param integer the integer whose rank has to be computed.
+   * @return the number of integers of the sequence that are smaller than <tt>integer</tt>.
+   */
+  public int rank(final long integer) {
+    int lo = 0;
+    int hi = length;
+    while (lo < hi) {
+      final int mid = lo + (hi - lo >> 1);
+      if (getLong(mid) < integer) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Returns the position of the smallest element of the sequence that is greater than or equal to
+   * the given integer. Returns <tt>-1</tt> if such value is not found.
+   * 
+   * @param integer the integer for which we want to compute the position of its smallest greater or
+   *        equal value in the sequence.
+   * @return the position of the smallest integer greater or equal to the one specified if it
+   *         exists; <tt>-1</tt> otherwise.
+   */
+  public final int nextGEQIndex(final long integer) {
+    final int rank = rank(integer);
+    return rank < length ? rank : -1;
+  }
+
+  /**
+   * Returns a forward-only cursor over the sequence, positioned before its first integer. The
+   * default implementation locates the targets of
+   * {@link MonotoneLongSequenceCursor#advanceTo(long)} with {@link #rank(long)}.
+   * 
+   * @return a cursor over the sequence.
+   */
+  public MonotoneLongSequenceCursor cursor() {
+    return new MonotoneLongSequenceCursor() {
+      int position = -1;
+      long value = -1L;
+
+      @Override
+      public long advanceTo(final long integer) {
+        if (position >= length) {
+          return -1L;
+        }
+        if (position >= 0 && value >= integer) {
+          return value;
+        }
+        final int index = nextGEQIndex(integer);
+        if (index == -1) {
+          position = length;
+          return value = -1L;
+        }
+        position = index;
+        return value = getLong(index);
+      }
+
+      @Override
+      public long next() {
+        if (position >= length) {
+          return -1L;
+        }
+        if (++position == length) {
+          return value = -1L;
+        }
+        return value = getLong(position);
+      }
+
+      @Override
+      public long value() {
+        return value;
+      }
+
+      @Override
+      public int position() {
+        return position;
+      }
+    };
+  }
+
+  /**
+   * Returns the largest element of the sequence that is smaller than or equal to the given integer.
+   * Returns <tt>-1</tt> if such value is not found. The default implementation relies on
+   * {@link #rank(long)}.
+   * 
+   * @param integer the integer for which we want to compute its largest smaller or equal value in
+   *        the sequence.
+   * @return the largest integer smaller or equal to the one specified if it exists; <tt>-1</tt>
+   *         otherwise.
+   */
+  public long prevLEQ(final long integer) {
+    final int rank = rankLEQ(integer);
+    return rank > 0 ? getLong(rank - 1) : -1L;
+  }
+
+  /**
+   * Returns the number of integers of the sequence that lie in the interval from <tt>lo</tt> to
+   * <tt>hi</tt>, both included.
+   * 
+   * @param lo the lower end of the interval.
+   * @param hi the upper end of the interval.
+   * @return the number of integers of the sequence in between <tt>lo</tt> and <tt>hi</tt>.
+   */
+  public final int count(final long lo, final long hi) {
+    if (lo > hi) {
+      return 0;
+    }
+    return rankLEQ(hi) - rank(lo);
+  }
+
+  // Returns the number of integers of the sequence that are smaller than or equal to the given one.
+  private int rankLEQ(final long integer) {
+    return integer == Long.MAX_VALUE ? length : rank(integer + 1);
+  }
 
   /**
    * Remove from the sequence the specified integer if it exists.
@@ -160,8 +553,18 @@ public abstract class AbstractMonotoneLongSequence implements List<Long> {
    */
   @Override
   public final boolean contains(final Object o) {
-    final long integer = (Long) o;
-    return nextGEQ(integer) == integer;
+    return contains((long) (Long) o);
+  }
+
+  /**
+   * Return <tt>true</tt> if the sequence contains the specified integer.
+   * 
+   * @param integer the integer to be tested for presence in the sequence.
+   * @return <tt>true</tt> if the integer is present; <tt>false</tt> otherwise.
+   */
+  public final boolean contains(final long integer) {
+    // Negative integers are never present, and -1 is the sentinel returned by nextGEQLong.
+    return integer >= 0 && nextGEQLong(integer) == integer;
   }
 
   /**
@@ -195,9 +598,10 @@ public abstract class AbstractMonotoneLongSequence implements List<Long> {
   @Override
   public final Long[] toArray() {
     Long[] temp = new Long[length];
+    LongIterator it = iterator();
     int i = 0;
-    for (Long integer : this) {
-      temp[i++] = integer;
+    while (it.hasNext()) {
+      temp[i++] = it.nextLong();
     }
     return temp;
   }
@@ -251,15 +655,12 @@ public abstract class AbstractMonotoneLongSequence implements List<Long> {
    */
   @Override
   public final int indexOf(Object o) {
-    Iterator<Long> it = this.iterator();
-    int index = 0;
-    while (it.hasNext()) {
-      if (o.equals(it.next())) {
-        return index;
-      }
-      index++;
+    if (!(o instanceof Long)) {
+      return -1;
     }
-    return -1;
+    final long integer = (Long) o;
+    final int rank = rank(integer);
+    return rank < length && getLong(rank) == integer ? rank : -1;
   }
 
   /**
@@ -271,18 +672,12 @@ public abstract class AbstractMonotoneLongSequence implements List<Long> {
    */
   @Override
   public final int lastIndexOf(Object o) {
-    final int index = indexOf(o);
-    if (index == -1) {
+    if (!(o instanceof Long)) {
       return -1;
     }
-    if (index + 1 < length) {
-      final long v = get(index + 1);
-
-      if (o.equals(v)) {
-        return index + 1;
-      }
-    }
-    return index;
+    final long integer = (Long) o;
+    final int rank = rankLEQ(integer);
+    return rank > 0 && getLong(rank - 1) == integer ? rank - 1 : -1;
   }
 
   /*
@@ -17,11 +17,12 @@
 package it.unipi.di;
 
 import java.io.Serializable;
-import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 
 import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.fastutil.longs.AbstractLongIterator;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 
 /**
  * The <tt>EliasFanoAdaptiveAppendOnlyMonotoneLongSequence</tt> class represents a monotone sequence
@@ -141,25 +142,25 @@ public final class EliasFanoAdaptiveAppendOnlyMonotoneLongSequence extends
   }
 
   @Override
-  public Iterator<Long> iterator() {
+  public LongIterator iterator() {
     return new EliasFanoAdaptiveAppendOnlyMonotoneLongSequenceIterator<Long>();
   }
 
   @Override
-  public Iterator<Long> iterator(final int from, final int to) {
+  public LongIterator iterator(final int from, final int to) {
     checkIndices(from, to);
     return new EliasFanoAdaptiveAppendOnlyMonotoneLongSequenceIterator<Long>(from, to);
   }
 
   // Iterator inner class.
-  private class EliasFanoAdaptiveAppendOnlyMonotoneLongSequenceIterator<T> implements
-      Iterator<Long> {
+  private class EliasFanoAdaptiveAppendOnlyMonotoneLongSequenceIterator<T> extends
+      AbstractLongIterator {
     int next = 0;
     int chunkId = 1;
     Chunk c = chunks.get(0);
     EliasFanoAppendOnlyMonotoneLongSequence chunk = c.s;
     long u = c.prevUpper;
-    Iterator<Long> it = chunk.iterator();
+    LongIterator it = chunk.iterator();
     final int N;
 
     EliasFanoAdaptiveAppendOnlyMonotoneLongSequenceIterator() {
@@ -169,12 +170,11 @@ public final class EliasFanoAdaptiveAppendOnlyMonotoneLongSequence extends
     EliasFanoAdaptiveAppendOnlyMonotoneLongSequenceIterator(final int from, final int to) {
       next = from;
       chunkId = chunk(from);
+      final int start = chunkStart(chunkId);
       Chunk c = chunks.get(chunkId++);
       chunk = c.s;
       u = c.prevUpper;
-      it =
-          chunk.iterator(from <= chunk.length ? from : from % (length - chunk.length),
-              to <= chunk.length ? to : chunk.length - 1);
+      it = chunk.iterator(from - start, Math.min(to - start, chunk.length - 1));
       N = to + 1;
     }
 
@@ -184,30 +184,25 @@ public final class EliasFanoAdaptiveAppendOnlyMonotoneLongSequence extends
     }
 
     @Override
-    public Long next() {
+    public long nextLong() {
       while (hasNext()) {
         while (it.hasNext()) {
           next++;
-          return it.next() + u;
+          return it.nextLong() + u;
         }
         Chunk c = chunks.get(chunkId++);
         chunk = c.s;
         it = chunk.iterator();
         u = c.prevUpper;
         next++;
-        return it.next() + u;
+        return it.nextLong() + u;
       }
       throw new NoSuchElementException("Element not present.");
     }
-
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException();
-    }
   }
 
   @Override
-  public boolean add(final Long integer) {
+  public boolean addLong(final long integer) {
     if (length > n) {
       next++;
       if (next < 7) {
@@ -215,13 +210,14 @@ public final class EliasFanoAdaptiveAppendOnlyMonotoneLongSequence extends
         n = B * B >> 3;
         EliasFanoAppendOnlyMonotoneLongSequence tmp =
             new EliasFanoAppendOnlyMonotoneLongSequence(B, chunk.s.length << 1);
-        for (Long i : chunk.s) {
-          tmp.add(i);
+        LongIterator it = chunk.s.iterator();
+        while (it.hasNext()) {
+          tmp.addLong(it.nextLong());
         }
         chunk.s = tmp;
         chunks.set(0, chunk);
       } else {
-        u = chunk.s.buffer[chunk.s.N - 1];
+        u = chunk.s.last + chunk.prevUpper;
         n = n << 1;
         B = (int) Math.sqrt(n << 2);
         chunk = new Chunk();
@@ -230,7 +226,7 @@ public final class EliasFanoAdaptiveAppendOnlyMonotoneLongSequence extends
         chunk.prevUpper = u;
       }
     }
-    chunk.s.add(integer - u);
+    chunk.s.addLong(integer - u);
     length++;
     return true;
   }
@@ -243,22 +239,96 @@ public final class EliasFanoAdaptiveAppendOnlyMonotoneLongSequence extends
     return x + ((n0 << x) - index >>> 31);
   }
 
+  // Routine that returns the index of the first integer of the chunk with the given id.
+  private int chunkStart(final int id) {
+    return (((id - 1) >>> 31) ^ 1) * ((n0 << id - 1) + 1);
+  }
+
   @Override
-  public Long get(final int index) {
+  public long getLong(final int index) {
     final int id = chunk(index);
     Chunk c = chunks.get(id);
-    return c.s.get(index - (((id - 1) >>> 31) ^ 1) * ((n0 << id - 1) + 1)) + c.prevUpper;
+    return c.s.getLong(index - chunkStart(id)) + c.prevUpper;
+  }
+
+  @Override
+  public void decode(final int from, final long[] dest, final int destOffset, final int count) {
+    checkDecodeBounds(from, dest, destOffset, count);
+    int id = count > 0 ? chunk(from) : 0;
+    int index = from;
+    int pos = destOffset;
+    final int end = destOffset + count;
+    while (pos < end) {
+      final Chunk c = chunks.get(id);
+      final int offset = index - chunkStart(id);
+      final int n = Math.min(end - pos, c.s.length - offset);
+      c.s.decode(offset, dest, pos, n);
+      final long u = c.prevUpper;
+      for (int i = pos; i < pos + n; i++) {
+        dest[i] += u;
+      }
+      pos += n;
+      index += n;
+      id++;
+    }
+  }
+
+  // Splits on the chunk boundary closest to the middle of the range, or on the bucket boundaries of
+  // the chunk if the range lies within a single chunk.
+  @Override
+  protected int splitPoint(final int from, final int to) {
+    final int mid = (from + to) >>> 1;
+    final int id = chunk(mid);
+    final int start = chunkStart(id);
+    final EliasFanoAppendOnlyMonotoneLongSequence chunk = chunks.get(id).s;
+    final int end = start + chunk.length;
+    if (start > from && (mid - start <= end - mid || end >= to)) {
+      return start;
+    }
+    if (end < to) {
+      return end;
+    }
+    return start + chunk.splitPoint(from - start, to - start);
   }
 
   @Override
-  public Long nextGEQ(final long integer) {
+  public long nextGEQLong(final long integer) {
     final int chunk = binarySearchOverPrevUpper(integer);
     Chunk c = chunks.get(chunk);
     final long u = c.prevUpper;
-    final long result = c.s.nextGEQ(integer - u);
+    final long result = c.s.nextGEQLong(integer - u);
     return result == -1L ? -1L : result + u;
   }
   
+  @Override
+  public int rank(final long integer) {
+    final int lastChunk = chunks.size() - 1;
+    int rank = 0;
+    for (int id = 0; id < lastChunk; id++) {
+      if (chunks.get(id + 1).prevUpper >= integer) {
+        Chunk c = chunks.get(id);
+        return rank + c.s.rank(integer - c.prevUpper);
+      }
+      rank += chunks.get(id).s.length;
+    }
+    Chunk c = chunks.get(lastChunk);
+    return rank + c.s.rank(integer - c.prevUpper);
+  }
+
+  @Override
+  public long prevLEQ(final long integer) {
+    for (int id = chunks.size() - 1; id >= 0; id--) {
+      Chunk c = chunks.get(id);
+      if (c.prevUpper <= integer) {
+        final long result = c.s.prevLEQ(integer - c.prevUpper);
+        if (result != -1L) {
+          return result + c.prevUpper;
+        }
+      }
+    }
+    return -1L;
+  }
+
   // Binary search over previous upper bounds.
   private int binarySearchOverPrevUpper(final long integer) {
     if (integer <= chunks.get(0).prevUpper) {
@@ -293,6 +363,93 @@ public final class EliasFanoAdaptiveAppendOnlyMonotoneLongSequence extends
     return -1;
   }
 
+  /**
+   * Returns a forward-only cursor over the sequence, positioned before its first integer. The cursor
+   * remembers its current chunk and delegates the search within the chunk to the cursor of the
+   * underlying append-only sequence, so chunks and buckets are never searched from scratch.
+   * 
+   * @return a cursor over the sequence.
+   */
+  @Override
+  public MonotoneLongSequenceCursor cursor() {
+    return new EliasFanoAdaptiveAppendOnlyMonotoneLongSequenceCursor();
+  }
+
+  private class EliasFanoAdaptiveAppendOnlyMonotoneLongSequenceCursor implements
+      MonotoneLongSequenceCursor {
+    int chunkId = 0;
+    Chunk c = chunks.get(0);
+    MonotoneLongSequenceCursor cursor = c.s.cursor();
+    int base = 0;
+    int position = -1;
+    long value = -1L;
+
+    @Override
+    public long advanceTo(final long integer) {
+      if (position >= length) {
+        return -1L;
+      }
+      if (position >= 0 && value >= integer) {
+        return value;
+      }
+
+      final int lastChunk = chunks.size() - 1;
+      while (chunkId < lastChunk && chunks.get(chunkId + 1).prevUpper < integer) {
+        nextChunk();
+      }
+
+      long v = cursor.advanceTo(integer - c.prevUpper);
+      while (v == -1L) {
+        if (chunkId == lastChunk) {
+          return exhaust();
+        }
+        nextChunk();
+        v = cursor.advanceTo(integer - c.prevUpper);
+      }
+      position = base + cursor.position();
+      return value = v + c.prevUpper;
+    }
+
+    @Override
+    public long next() {
+      if (position >= length) {
+        return -1L;
+      }
+
+      long v = cursor.next();
+      while (v == -1L) {
+        if (chunkId == chunks.size() - 1) {
+          return exhaust();
+        }
+        nextChunk();
+        v = cursor.next();
+      }
+      position = base + cursor.position();
+      return value = v + c.prevUpper;
+    }
+
+    private void nextChunk() {
+      base += c.s.length;
+      c = chunks.get(++chunkId);
+      cursor = c.s.cursor();
+    }
+
+    private long exhaust() {
+      position = length;
+      return value = -1L;
+    }
+
+    @Override
+    public long value() {
+      return value;
+    }
+
+    @Override
+    public int position() {
+      return position;
+    }
+  }
+
   @Override
   public List<Long> subList(final int from, final int to) {
     checkIndices(from, to);
@@ -300,9 +457,9 @@ public final class EliasFanoAdaptiveAppendOnlyMonotoneLongSequence extends
     EliasFanoAdaptiveAppendOnlyMonotoneLongSequence subList =
         new EliasFanoAdaptiveAppendOnlyMonotoneLongSequence();
 
-    Iterator<Long> it = this.iterator(from, to);
+    LongIterator it = this.iterator(from, to);
     while (it.hasNext()) {
-      subList.add(it.next());
+      subList.addLong(it.nextLong());
     }
     return subList;
   }
@@ -17,14 +17,23 @@
 package it.unipi.di;
 
 import java.io.Serializable;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 import it.unimi.dsi.bits.BitVector;
 import it.unimi.dsi.bits.Fast;
 import it.unimi.dsi.bits.LongArrayBitVector;
-import it.unimi.dsi.fastutil.longs.LongBigList;
+import it.unimi.dsi.fastutil.longs.AbstractLongIterator;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.sux4j.bits.Select;
+import it.unimi.dsi.sux4j.bits.SelectZero;
 import it.unimi.dsi.sux4j.bits.SimpleSelect;
+import it.unimi.dsi.sux4j.bits.SimpleSelectZero;
 
 /**
  * The <tt>EliasFanoAppendOnlyMonotoneLongSequence</tt> class represents a monotone sequence of
@@ -35,6 +44,32 @@ import it.unimi.dsi.sux4j.bits.SimpleSelect;
  * expected to contain.
  * 
  * <p>
+ * When a bucket is compressed, a cheaper representation is picked in place of Elias-Fano if its
+ * integers are distinct and dense: a plain bitmap over the range in between the upper bound of the
+ * previous bucket and its maximum or, if the bucket holds every integer of such range, a <em>full
+ * run</em> marker with no payload at all. Buckets forming an arithmetic progression, such as
+ * regularly sampled timestamps, only store their first integer and stride, plus the few integers
+ * deviating from the progression, while buckets made of long runs of equal integers store a value
+ * and an end position per run. The representation is recorded in the info entry of the bucket,
+ * in place of its number of lower bits, and all the operations dispatch on it.
+ * </p>
+ * 
+ * <p>
+ * Sequences holding rarely queried history can be moved to a <em>cold</em> tier with
+ * {@link #freezeCold()}, which re-encodes the compressed buckets with <em>binary interpolative
+ * coding</em>, much smaller than Elias-Fano on clustered integers. A cold bucket is decoded
+ * whenever it is accessed and the last few decoded buckets are kept in a small cache, which is safe
+ * to share among concurrent readers. {@link #thaw()} brings the buckets back to the hot tier.
+ * </p>
+ * 
+ * <p>
+ * Alternatively, the sequence can be built in <em>packed</em> mode, favouring decoding speed over
+ * space: each bucket stores the gaps in between its integers with the same number of bits, chosen
+ * so as to minimize the space of the bucket, while the few larger gaps are patched from a list of
+ * exceptions, in the style of PFor. A sample every 64 integers bounds the cost of random access.
+ * </p>
+ * 
+ * <p>
  * It supports the <em>append</em>, <em>get</em> and <em>next greater or equal</em> operations,
  * along with methods for inspecting how many bits the sequence is using, testing if the sequence is
  * empty, and iterating through the items in order.
@@ -66,10 +101,14 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
   protected DynamicArray<long[]> lowerBits;
 
   // Array of selectors' references: one for each bucket.
-  protected DynamicArray<SimpleSelect> selectors;
+  protected DynamicArray<Select> selectors;
+
+  // Array of zero-selectors' references over the same upper bits: one for each bucket. For short
+  // upper bits, the zero-selector is the same object as the selector.
+  protected DynamicArray<SelectZero> zeroSelectors;
 
-  // Array storing for each bucket, in an interleaved way, the number of lower bits and maximum
-  // element.
+  // Array storing for each bucket, in an interleaved way, the number of lower bits, or the code of
+  // its representation, and maximum element.
   protected LongDynamicArray info;
 
   // Bitmask to extract lower bits.
@@ -78,6 +117,66 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
   // Bitmask to extract upper bounds.
   protected transient static final long UPPER_BITS_MASK = ~LOWER_BITS_MASK;
 
+  // Smallest code, stored in the lower bits of an info entry, of a bucket that is not Elias-Fano
+  // encoded: upper bounds fit 58 bits, so Elias-Fano buckets never have more lower bits than 57.
+  protected transient static final long MIN_CODE = 58;
+
+  // Code of a bucket stored as a bitmap of its integers relative to the previous upper bound.
+  protected transient static final long BITMAP = 63;
+
+  // Code of a bucket holding every integer after the previous upper bound up to its maximum.
+  protected transient static final long FULL_RUN = 62;
+
+  // Code of a bucket storing the gaps in between its integers with a fixed number of bits, plus
+  // exceptions.
+  protected transient static final long PACKED = 61;
+
+  // Code of a bucket forming an arithmetic progression, up to a few exceptions.
+  protected transient static final long PROGRESSION = 60;
+
+  // Maximum number of exceptions of an arithmetic progression bucket.
+  protected transient static final int MAX_PROGRESSION_EXCEPTIONS = 8;
+
+  // Code of a bucket storing its runs of equal integers as pairs of value and end position.
+  protected transient static final long RUNS = 59;
+
+  // Code of a cold bucket coded with binary interpolative coding, decoded on demand.
+  protected transient static final long INTERPOLATIVE = 58;
+
+  // Number of slots of the cache of decoded cold buckets.
+  protected transient static final int COLD_CACHE_SIZE = 16;
+
+  // Base 2 logarithm of the number of integers in between two samples of a packed bucket.
+  protected transient static final int LOG_PACKED_SAMPLING = 6;
+
+  // Estimated number of bits taken by an exception of a packed bucket: its high bits and position.
+  protected transient static final int PACKED_EXCEPTION_COST = Long.SIZE + Integer.SIZE;
+
+  // Selector shared by all the buckets with no upper bits.
+  protected transient static final SmallSelect EMPTY_SELECTOR = new SmallSelect(
+      LongArrayBitVector.getInstance());
+
+  // Maximum length of the upper bits indexed by a SmallSelect.
+  protected transient static final long SMALL_SELECT_MAX_LENGTH = 1L << 16;
+
+  // Lower bits' bitmap shared by all the buckets with no lower bits.
+  protected transient static final long[] EMPTY_LOWER_BITS = new long[0];
+
+  // Record reused across compressions.
+  private transient CompressedBucket scratch;
+
+  // Read-optimized directory over the upper bounds of a prefix of the buckets, if built.
+  protected transient EytzingerDirectory directory;
+
+  // Whether buckets are compressed in packed mode rather than with Elias-Fano.
+  protected boolean packed;
+
+  // Learned model of the upper bounds of a prefix of the buckets, if built.
+  protected transient PiecewiseLinearDirectory model;
+
+  // Direct-mapped cache of the most recently decoded cold buckets, allocated on first use.
+  private transient ColdBucket[] coldCache;
+
   /**
    * Constructor for unknown initial capacity.
    * 
@@ -85,16 +184,29 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
    * @throws IllegalArgumentException if <tt>B</tt> is zero.
    */
   public EliasFanoAppendOnlyMonotoneLongSequence(final int B) {
+    this(B, false);
+  }
+
+  /**
+   * Constructor for unknown initial capacity, choosing how the buckets are compressed.
+   * 
+   * @param B the chosen bucket size.
+   * @param packed whether the buckets are compressed in packed mode, rather than with Elias-Fano.
+   * @throws IllegalArgumentException if <tt>B</tt> is zero.
+   */
+  public EliasFanoAppendOnlyMonotoneLongSequence(final int B, final boolean packed) {
     if (B == 0) {
       throw new IllegalArgumentException("Bucket size must be greater than 0.");
     }
 
     this.B = B;
+    this.packed = packed;
     last = Long.MIN_VALUE;
     buffer = new long[B];
     N = 0;
     lowerBits = new DynamicArray<long[]>();
-    selectors = new DynamicArray<SimpleSelect>();
+    selectors = new DynamicArray<Select>();
+    zeroSelectors = new DynamicArray<SelectZero>();
     info = new LongDynamicArray();
     info.add(0L);
     buckets = 0;
@@ -109,6 +221,20 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
    * @throws IllegalArgumentException if <tt>capacity</tt> is less than <tt>B</tt>.
    */
   public EliasFanoAppendOnlyMonotoneLongSequence(final int B, final int capacity) {
+    this(B, capacity, false);
+  }
+
+  /**
+   * Constructor for known initial capacity, choosing how the buckets are compressed.
+   * 
+   * @param B the chosen bucket size.
+   * @param capacity the initial capacity.
+   * @param packed whether the buckets are compressed in packed mode, rather than with Elias-Fano.
+   * @throws IllegalArgumentException if <tt>B</tt> is zero.
+   * @throws IllegalArgumentException if <tt>capacity</tt> is less than <tt>B</tt>.
+   */
+  public EliasFanoAppendOnlyMonotoneLongSequence(final int B, final int capacity,
+      final boolean packed) {
     if (B == 0) {
       throw new IllegalArgumentException("Bucket size must be greater than 0.");
     }
@@ -118,12 +244,14 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
     }
 
     this.B = B;
+    this.packed = packed;
     last = Long.MIN_VALUE;
     buffer = new long[B];
     N = 0;
     final int b = capacity / B;
     lowerBits = new DynamicArray<long[]>(b);
-    selectors = new DynamicArray<SimpleSelect>(b);
+    selectors = new DynamicArray<Select>(b);
+    zeroSelectors = new DynamicArray<SelectZero>(b);
     info = new LongDynamicArray(b);
     info.add(0L);
     buckets = 0;
@@ -136,31 +264,35 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
     N = 0;
     lowerBits.clear();
     selectors.clear();
+    zeroSelectors.clear();
     info.clear();
     info.add(0L);
     buckets = 0;
+    directory = null;
+    model = null;
+    coldCache = null;
   }
 
   @Override
-  public Iterator<Long> iterator() {
+  public LongIterator iterator() {
     return new EliasFanoAppendOnlyMonotoneLongSequenceIterator<Long>();
   }
 
   @Override
-  public Iterator<Long> iterator(final int from, final int to) {
+  public LongIterator iterator(final int from, final int to) {
     checkIndices(from, to);
     return new EliasFanoAppendOnlyMonotoneLongSequenceIterator<Long>(from, to);
   }
 
-  protected Iterator<Long> iterator(final int bucket) {
+  protected LongIterator iterator(final int bucket) {
     return new EliasFanoAppendOnlyMonotoneLongSequenceIterator<Long>(bucket);
   }
 
-  protected Iterator<Long> iterator(final Integer bucket, final int bucketSize) {
+  protected LongIterator iterator(final Integer bucket, final int bucketSize) {
     return new EliasFanoAppendOnlyMonotoneLongSequenceIterator<Long>(bucket, bucketSize);
   }
 
-  private class EliasFanoAppendOnlyMonotoneLongSequenceIterator<T> implements Iterator<Long> {
+  private class EliasFanoAppendOnlyMonotoneLongSequenceIterator<T> extends AbstractLongIterator {
     int next = 0;
     int bucket = 0;
     int offset = 0;
@@ -172,8 +304,9 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
     long lowerBitsMask;
     long upperBits;
     long nextOne;
-    SimpleSelect selector;
+    Select selector;
     long[] lowerBitsVector;
+    long[] decoded;
     int b = B;
 
     EliasFanoAppendOnlyMonotoneLongSequenceIterator() {
@@ -195,7 +328,12 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
           lowerBitsVector = lowerBits.get(bucket);
 
           ones = offset;
-          nextOne = selector.select((offset == 0 ? 1 : offset) - 1);
+          if (l == PACKED || l == RUNS || l == INTERPOLATIVE) {
+            decodeBucket();
+          } else {
+            nextOne =
+                l < MIN_CODE || l == BITMAP ? selector.select((offset == 0 ? 1 : offset) - 1) : -1;
+          }
         }
         bucket++;
       }
@@ -220,7 +358,7 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
     }
 
     @Override
-    public Long next() {
+    public long nextLong() {
       if (next % b == 0) {
         offset = 0;
         nextOne = -1;
@@ -233,6 +371,9 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
           u = (lu & UPPER_BITS_MASK) >> 6;
           lowerBitsMask = (1L << l) - 1;
           lowerBitsVector = lowerBits.get(bucket);
+          if (l == PACKED || l == RUNS || l == INTERPOLATIVE) {
+            decodeBucket();
+          }
         }
         bucket++;
       }
@@ -241,6 +382,21 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
         return buffer[next++ % b];
       }
 
+      if (l >= MIN_CODE) {
+        next++;
+        if (l == FULL_RUN) {
+          return u + 1 + offset++;
+        }
+        if (l == PACKED || l == RUNS || l == INTERPOLATIVE) {
+          return decoded[offset++];
+        }
+        if (l == PROGRESSION) {
+          return getProgression(lowerBitsVector, offset++) + u;
+        }
+        offset++;
+        return (nextOne = selector.bitVector().nextOne(nextOne + 1)) + u;
+      }
+
       nextOne = selector.bitVector().nextOne(nextOne + 1);
       upperBits = nextOne - ones++;
 
@@ -265,195 +421,1666 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
           + u;
     }
 
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException();
+    // Decodes the whole current bucket at once.
+    private void decodeBucket() {
+      if (decoded == null) {
+        decoded = new long[b];
+      }
+      decode(info.array[bucket], selector, lowerBitsVector, 0, decoded, 0, b);
     }
   }
 
   // Compression routine.
   protected void compress(final long[] buffer) {
-    final int B = buffer.length;
-    final long lu = info.array[buckets];
-    final long prevUpper = (lu & UPPER_BITS_MASK) >> 6;
-    final long last = buffer[B - 1];
-    final long u = last - prevUpper;
-    final long l = Math.max(0, Fast.mostSignificantBit(u / B));
-    final long lowerBitsMask = (1L << l) - 1;
+    compress(buffer, 0, buffer.length);
+  }
 
-    LongArrayBitVector lowerBitsVector = LongArrayBitVector.getInstance();
-    LongBigList lowerBitsList = lowerBitsVector.asLongBigList((int) l);
-    lowerBitsList.size(B);
-    BitVector upperBits = LongArrayBitVector.getInstance().length(B + (u >>> l) + 1);
+  // Compresses the B integers of the array starting from the specified offset into a new bucket.
+  protected void compress(final long[] buffer, final int offset, final int B) {
+    final long prevUpper = (info.array[buckets] & UPPER_BITS_MASK) >> 6;
+    if (scratch == null) {
+      scratch = new CompressedBucket();
+    }
+    append(packed ? encodePacked(buffer, offset, B, prevUpper, scratch) : encode(buffer, offset,
+        B, prevUpper, scratch), prevUpper, buffer[offset + B - 1]);
+  }
 
-    if (l != 0) {
-      long v;
+  // Appends an encoded bucket whose integers lie in between prevUpper and last.
+  private void append(final CompressedBucket bucket, final long prevUpper, final long last) {
+    lowerBits.add(bucket.lowerBits);
+    selectors.add(bucket.selector);
+    zeroSelectors.add(bucket.zeroSelector);
+    info.array[buckets++] = (prevUpper << 6) | bucket.l;
+    info.add(last << 6);
+  }
+
+  // Builds a selector over the upper bits of a bucket: short bit vectors are indexed by a
+  // SmallSelect, longer ones by a SimpleSelect.
+  protected static Select selector(final BitVector upperBits) {
+    return upperBits.length() <= SMALL_SELECT_MAX_LENGTH ? new SmallSelect(upperBits)
+        : new SimpleSelect(upperBits);
+  }
+
+  // Builds a zero-selector over the upper bits of a bucket, reusing the selector if it supports
+  // select zero as well.
+  protected static SelectZero zeroSelector(final BitVector upperBits, final Select selector) {
+    return selector instanceof SelectZero ? (SelectZero) selector
+        : new SimpleSelectZero(upperBits);
+  }
+
+  // Record class that represents an encoded bucket.
+  static protected class CompressedBucket {
+    long[] lowerBits;
+    Select selector;
+    SelectZero zeroSelector;
+    long l;
+  }
+
+  // Immutable entry of the cold cache: a cold bucket along with its decoded integers. Since the
+  // fields are final, a reader never sees an entry whose integers belong to another bucket.
+  static private final class ColdBucket {
+    final int bucket;
+    final long[] values;
+
+    ColdBucket(final int bucket, final long[] values) {
+      this.bucket = bucket;
+      this.values = values;
+    }
+  }
+
+  // Encodes the B integers of the array starting from the specified offset relatively to prevUpper
+  // into the given record, with the cheapest among Elias-Fano, a bitmap, a full run and an
+  // arithmetic progression. The routine does not touch the state of the sequence, hence it can run
+  // concurrently.
+  protected static CompressedBucket encode(final long[] buffer, final int offset, final int B,
+      final long prevUpper, final CompressedBucket bucket) {
+    final long u = buffer[offset + B - 1] - prevUpper;
+    final long l = Math.max(0, Fast.mostSignificantBit(u / B));
+    final long eliasFanoBits = B * l + B + (u >>> l) + 1;
+    final boolean dense =
+        u < SMALL_SELECT_MAX_LENGTH && u + 1 < eliasFanoBits
+            && isStrictlyIncreasing(buffer, offset, B);
+    if (dense && u == B && buffer[offset] > prevUpper) {
+      bucket.lowerBits = EMPTY_LOWER_BITS;
+      bucket.selector = EMPTY_SELECTOR;
+      bucket.zeroSelector = EMPTY_SELECTOR;
+      bucket.l = FULL_RUN;
+      return bucket;
+    }
+    final long bits = dense ? u + 1 : eliasFanoBits;
+    if (encodeProgression(buffer, offset, B, prevUpper, bits, bucket)
+        || !dense && encodeRuns(buffer, offset, B, prevUpper, bits, bucket)) {
+      return bucket;
+    }
+    if (dense) {
+      final long[] bitmap = new long[(int) (u + Long.SIZE >>> 6)];
       for (int i = 0; i < B; i++) {
-        v = buffer[i] - prevUpper;
-        lowerBitsList.set(i, v & lowerBitsMask);
-        upperBits.set((v >>> l) + i);
+        final long position = buffer[offset + i] - prevUpper;
+        bitmap[(int) (position >>> 6)] |= 1L << position;
       }
-    } else {
-      for (int i = 0; i < B; i++) {
-        upperBits.set(buffer[i] - prevUpper + i);
+      final SmallSelect selector = new SmallSelect(LongArrayBitVector.wrap(bitmap, u + 1));
+      bucket.lowerBits = EMPTY_LOWER_BITS;
+      bucket.selector = selector;
+      bucket.zeroSelector = selector;
+      bucket.l = BITMAP;
+      return bucket;
+    }
+    return encodeEliasFano(buffer, offset, B, prevUpper, bucket);
+  }
+
+  // Encodes the B integers of the array starting from the specified offset relatively to prevUpper
+  // into the given record as an arithmetic progression, if they form one up to a few exceptions and
+  // this takes fewer bits than the given ones: returns whether they were encoded. The stride is the
+  // one joining the first and last integers. The payload, stored in place of the lower bits, holds
+  // the first integer relative to prevUpper, the stride, the positions of the exceptions and their
+  // integers relative to prevUpper.
+  private static boolean encodeProgression(final long[] buffer, final int offset, final int B,
+      final long prevUpper, final long bits, final CompressedBucket bucket) {
+    if (B < 2) {
+      return false;
+    }
+    final long first = buffer[offset];
+    final long stride = (buffer[offset + B - 1] - first) / (B - 1);
+    int exceptions = 0;
+    long expected = first;
+    for (int i = 0; i < B; i++) {
+      if (buffer[offset + i] != expected && ++exceptions > MAX_PROGRESSION_EXCEPTIONS) {
+        return false;
       }
+      expected += stride;
+    }
+    if ((2 + 2 * exceptions) * Long.SIZE >= bits) {
+      return false;
     }
 
-    lowerBits.add(lowerBitsVector.bits());
-    selectors.add(new SimpleSelect(upperBits));
-    info.array[buckets++] = (prevUpper << 6) | l;
-    info.add(last << 6);
+    final long[] payload = new long[2 + 2 * exceptions];
+    payload[0] = first - prevUpper;
+    payload[1] = stride;
+    int exception = 0;
+    expected = first;
+    for (int i = 0; i < B; i++) {
+      if (buffer[offset + i] != expected) {
+        payload[2 + exception] = i;
+        payload[2 + exceptions + exception++] = buffer[offset + i] - prevUpper;
+      }
+      expected += stride;
+    }
+    bucket.lowerBits = payload;
+    bucket.selector = EMPTY_SELECTOR;
+    bucket.zeroSelector = EMPTY_SELECTOR;
+    bucket.l = PROGRESSION;
+    return true;
   }
 
-  @Override
-  public boolean add(final Long integer) {
-    if (last > integer) {
-      throw new IllegalArgumentException("The list of values is not monotone: " + last + " > "
-          + integer + ".");
+  // Returns the integer, relative to prevUpper, at the specified offset of an arithmetic progression
+  // bucket: a multiply-add, unless the offset is an exception.
+  protected static long getProgression(final long[] payload, final int offset) {
+    return getProgression(payload, 0, payload.length, offset);
+  }
+
+  // Returns the integer, relative to prevUpper, at the specified offset of a progression bucket
+  // whose payload is made of the given number of words of the array, starting from base.
+  protected static long getProgression(final long[] payload, final int base, final int words,
+      final int offset) {
+    final int exceptions = words - 2 >>> 1;
+    for (int i = 0; i < exceptions; i++) {
+      if (payload[base + 2 + i] == offset) {
+        return payload[base + 2 + exceptions + i];
+      }
     }
+    return payload[base] + offset * payload[base + 1];
+  }
 
-    if (N == B) {
-      compress(buffer);
-      N = 0;
+  // Decodes count integers of an arithmetic progression bucket, relative to prevUpper, starting
+  // from the specified offset, given the number of words of its payload starting from base: the
+  // progression is written first, then patched with the exceptions.
+  protected static void decodeProgression(final long[] payload, final int base, final int words,
+      final int offset, final long[] dest, final int destOffset, final int count) {
+    final long stride = payload[base + 1];
+    long value = payload[base] + offset * stride;
+    final int end = destOffset + count;
+    for (int i = destOffset; i < end; i++) {
+      dest[i] = value;
+      value += stride;
+    }
+    final int exceptions = words - 2 >>> 1;
+    for (int i = 0; i < exceptions; i++) {
+      final long position = payload[base + 2 + i] - offset;
+      if (position >= 0 && position < count) {
+        dest[destOffset + (int) position] = payload[base + 2 + exceptions + i];
+      }
     }
+  }
 
-    buffer[N++] = integer;
-    last = integer;
-    length++;
+  // Returns the offset, within an arithmetic progression bucket of the given size, of the first
+  // integer that, relative to prevUpper, is greater than or equal to v; the size of the bucket if
+  // there is no such integer. The offset is computed by a division, then moved across exceptions.
+  protected static int nextGEQOffsetProgression(final long[] payload, final int size,
+      final long v) {
+    return nextGEQOffsetProgression(payload, 0, payload.length, size, v);
+  }
+
+  // Returns the offset, within an arithmetic progression bucket of the given size whose payload is
+  // made of the given number of words of the array starting from base, of the first integer that,
+  // relative to prevUpper, is greater than or equal to v; the size of the bucket if there is none.
+  protected static int nextGEQOffsetProgression(final long[] payload, final int base,
+      final int words, final int size, final long v) {
+    final long first = payload[base];
+    final long stride = payload[base + 1];
+    int offset;
+    if (v <= first) {
+      offset = 0;
+    } else if (stride == 0) {
+      offset = size;
+    } else {
+      final long k = (v - first + stride - 1) / stride;
+      offset = k < size ? (int) k : size;
+    }
+    if (words > 2) {
+      while (offset > 0 && getProgression(payload, base, words, offset - 1) >= v) {
+        offset--;
+      }
+      while (offset < size && getProgression(payload, base, words, offset) < v) {
+        offset++;
+      }
+    }
+    return offset;
+  }
+
+  // Encodes the B integers of the array starting from the specified offset relatively to prevUpper
+  // into the given record as runs of equal integers, if this takes fewer bits than the given ones:
+  // returns whether they were encoded. The payload, stored in place of the lower bits, holds the
+  // value of each run relative to prevUpper, followed by the position where each run ends.
+  private static boolean encodeRuns(final long[] buffer, final int offset, final int B,
+      final long prevUpper, final long bits, final CompressedBucket bucket) {
+    final int end = offset + B;
+    int runs = 1;
+    for (int i = offset + 1; i < end; i++) {
+      if (buffer[i] != buffer[i - 1]) {
+        runs++;
+      }
+    }
+    if (2L * runs * Long.SIZE >= bits) {
+      return false;
+    }
 
+    final long[] payload = new long[runs << 1];
+    int run = 0;
+    for (int i = offset + 1; i < end; i++) {
+      if (buffer[i] != buffer[i - 1]) {
+        payload[run] = buffer[i - 1] - prevUpper;
+        payload[runs + run++] = i - offset;
+      }
+    }
+    payload[run] = buffer[end - 1] - prevUpper;
+    payload[runs + run] = B;
+    bucket.lowerBits = payload;
+    bucket.selector = EMPTY_SELECTOR;
+    bucket.zeroSelector = EMPTY_SELECTOR;
+    bucket.l = RUNS;
     return true;
   }
 
-  @Override
-  public Long get(final int index) {
-    if (index < 0 || index >= length) {
-      throw new IndexOutOfBoundsException("" + index);
+  // Returns the run containing the integer at the specified offset of a runs bucket whose payload
+  // is made of the given number of words of the array, starting from base.
+  private static int run(final long[] payload, final int base, final int words,
+      final int offset) {
+    final int runs = words >>> 1;
+    int lo = 0;
+    int hi = runs - 1;
+    while (lo < hi) {
+      final int mid = lo + (hi - lo >> 1);
+      if (payload[base + runs + mid] <= offset) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
     }
-    final int B = this.B;
-    final int bucket = index / B;
-    final int offset = index % B;
-    return get(bucket, offset);
+    return lo;
   }
 
-  protected Long get(final int bucket, final int offset) {
-    if (bucket == selectors.size()) {
-      return buffer[offset];
+  // Returns the integer, relative to prevUpper, at the specified offset of a runs bucket.
+  protected static long getRuns(final long[] payload, final int offset) {
+    return getRuns(payload, 0, payload.length, offset);
+  }
+
+  // Returns the integer, relative to prevUpper, at the specified offset of a runs bucket whose
+  // payload is made of the given number of words of the array, starting from base.
+  protected static long getRuns(final long[] payload, final int base, final int words,
+      final int offset) {
+    return payload[base + run(payload, base, words, offset)];
+  }
+
+  // Decodes count integers of a runs bucket, relative to prevUpper, starting from the specified
+  // offset, one run at a time.
+  protected static void decodeRuns(final long[] payload, final int offset, final long[] dest,
+      final int destOffset, final int count) {
+    decodeRuns(payload, 0, payload.length, offset, dest, destOffset, count);
+  }
+
+  // Decodes count integers of a runs bucket whose payload is made of the given number of words of
+  // the array starting from base, relative to prevUpper, starting from the specified offset.
+  protected static void decodeRuns(final long[] payload, final int base, final int words,
+      final int offset, final long[] dest, final int destOffset, final int count) {
+    final int runs = words >>> 1;
+    int run = run(payload, base, words, offset);
+    int i = destOffset;
+    final int end = destOffset + count;
+    int runEnd = destOffset + (int) payload[base + runs + run] - offset;
+    while (i < end) {
+      final long value = payload[base + run++];
+      final int stop = Math.min(runEnd, end);
+      while (i < stop) {
+        dest[i++] = value;
+      }
+      if (run < runs) {
+        runEnd += (int) (payload[base + runs + run] - payload[base + runs + run - 1]);
+      }
     }
+  }
 
-    final long lu = info.array[bucket];
-    final long l = lu & LOWER_BITS_MASK;
-    final long u = (lu & UPPER_BITS_MASK) >> 6;
-    final long lowerBitsMask = (1L << l) - 1;
-    final long upperBits = selectors.get(bucket).select(offset) - offset;
+  // Returns the offset, within a runs bucket, of the first integer that, relative to prevUpper, is
+  // greater than or equal to v; the size of the bucket if there is no such integer. The runs are
+  // binary searched by value, so that the answer is the end of the previous run.
+  protected static int nextGEQOffsetRuns(final long[] payload, final long v) {
+    return nextGEQOffsetRuns(payload, 0, payload.length, v);
+  }
 
-    if (l == 0) {
-      return upperBits + u;
+  // Returns the offset, within a runs bucket whose payload is made of the given number of words of
+  // the array starting from base, of the first integer that, relative to prevUpper, is greater
+  // than or equal to v; the size of the bucket if there is no such integer.
+  protected static int nextGEQOffsetRuns(final long[] payload, final int base, final int words,
+      final long v) {
+    final int runs = words >>> 1;
+    int lo = 0;
+    int hi = runs;
+    while (lo < hi) {
+      final int mid = lo + (hi - lo >> 1);
+      if (payload[base + mid] < v) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
     }
+    return lo == 0 ? 0 : (int) payload[base + runs + lo - 1];
+  }
 
-    final int LONG_SIZE = Long.SIZE;
-    final long lowerBitsPosition = offset * l;
-    final int startWord = (int) (lowerBitsPosition / LONG_SIZE);
-    final int startBit = (int) (lowerBitsPosition % LONG_SIZE);
-    final long totalOffset = startBit + l;
-    final long result = lowerBits.get(bucket)[startWord] >>> startBit;
-    return (upperBits << l | (totalOffset <= LONG_SIZE ? result : result
-        | lowerBits.get(bucket)[startWord + 1] << -startBit)
-        & lowerBitsMask)
-        + u;
+  // Encodes the B integers of the array starting from the specified offset relatively to prevUpper
+  // with binary interpolative coding. The payload starts with the number of integers and the
+  // maximum, relative to prevUpper, followed by the codes. The i-th integer is shifted by i, so
+  // that the sequence becomes strictly increasing: then the middle integer of a range is written
+  // with just enough bits to tell it among the values allowed by the two integers enclosing the
+  // range, before recurring on the two halves. Ranges that are full cost no bits at all.
+  protected static long[] encodeInterpolative(final long[] buffer, final int offset, final int B,
+      final long prevUpper) {
+    final long[] values = new long[B];
+    for (int i = 0; i < B; i++) {
+      values[i] = buffer[offset + i] - prevUpper + i;
+    }
+    final long high = values[B - 1];
+    final long bits = interpolativeBits(values, 0, B - 2, 0, high - 1);
+    final long[] payload = new long[2 + (int) (bits + Long.SIZE - 1 >>> 6)];
+    payload[0] = B;
+    payload[1] = high - (B - 1);
+    writeInterpolative(payload, 2L * Long.SIZE, values, 0, B - 2, 0, high - 1);
+    return payload;
   }
 
-  @Override
-  public Long nextGEQ(final long integer) {
-//    final int pos = binarySearchOverInfo(integer);
-    return binarySearchOverBucket(binarySearchOverInfo(integer), integer);
-//    Iterator<Long> it = this.iterator(pos);
-//    while (it.hasNext()) {
-//      long v = it.next();
-//      if (v >= integer) {
-//        return v;
-//      }
-//    }
-//    return -1L;
+  // Returns the number of bits needed to code the integers of the range [lo, hi] of a strictly
+  // increasing array, all lying in between low and high.
+  private static long interpolativeBits(final long[] values, final int lo, final int hi,
+      final long low, final long high) {
+    if (lo > hi) {
+      return 0;
+    }
+    final int mid = lo + hi >>> 1;
+    final long width = high - low - (hi - lo);
+    return Long.SIZE - Long.numberOfLeadingZeros(width)
+        + interpolativeBits(values, lo, mid - 1, low, values[mid] - 1)
+        + interpolativeBits(values, mid + 1, hi, values[mid] + 1, high);
   }
-  
-  // Binary search over info array.
-  protected long binarySearchOverBucket(final int bucket, final long integer) {
-    final long first = get(bucket, 0);
-    if (integer <= first) {
-      return first;
-    }
-    final long last = bucket == buckets ? this.last : get(bucket, B - 1);
-    if (integer == last) {
-      return last;
+
+  // Writes the codes of the integers of the range [lo, hi] starting from the specified bit
+  // position: returns the position following the last written bit.
+  private static long writeInterpolative(final long[] payload, long position,
+      final long[] values, final int lo, final int hi, final long low, final long high) {
+    if (lo > hi) {
+      return position;
     }
-    if (integer > last) {
-      return -1L;
+    final int mid = lo + hi >>> 1;
+    final long width = high - low - (hi - lo);
+    final int w = Long.SIZE - Long.numberOfLeadingZeros(width);
+    if (w != 0) {
+      final long code = values[mid] - low - (mid - lo);
+      final int word = (int) (position >>> 6);
+      final int bit = (int) (position & 63);
+      payload[word] |= code << bit;
+      if (bit + w > Long.SIZE) {
+        payload[word + 1] |= code >>> -bit;
+      }
+      position += w;
+    }
+    position = writeInterpolative(payload, position, values, lo, mid - 1, low, values[mid] - 1);
+    return writeInterpolative(payload, position, values, mid + 1, hi, values[mid] + 1, high);
+  }
+
+  // Reads the codes of the integers of the range [lo, hi] starting from the specified bit position
+  // into the array: returns the position following the last read bit.
+  private static long readInterpolative(final long[] payload, long position, final long[] values,
+      final int lo, final int hi, final long low, final long high) {
+    if (lo > hi) {
+      return position;
+    }
+    final int mid = lo + hi >>> 1;
+    final long width = high - low - (hi - lo);
+    final int w = Long.SIZE - Long.numberOfLeadingZeros(width);
+    long code = 0;
+    if (w != 0) {
+      final int word = (int) (position >>> 6);
+      final int bit = (int) (position & 63);
+      code = payload[word] >>> bit;
+      if (bit + w > Long.SIZE) {
+        code |= payload[word + 1] << -bit;
+      }
+      code &= -1L >>> -w;
+      position += w;
     }
-    
+    values[mid] = low + (mid - lo) + code;
+    position = readInterpolative(payload, position, values, lo, mid - 1, low, values[mid] - 1);
+    return readInterpolative(payload, position, values, mid + 1, hi, values[mid] + 1, high);
+  }
+
+  // Decodes all the integers of a cold bucket, relative to prevUpper.
+  protected static long[] decodeInterpolative(final long[] payload) {
+    final int n = (int) payload[0];
+    final long[] values = new long[n];
+    final long high = payload[1] + n - 1;
+    values[n - 1] = high;
+    readInterpolative(payload, 2L * Long.SIZE, values, 0, n - 2, 0, high - 1);
+    for (int i = 0; i < n; i++) {
+      values[i] -= i;
+    }
+    return values;
+  }
+
+  // Returns the first position of the sorted array holding an integer greater than or equal to the
+  // given one; the length of the array if there is no such integer.
+  private static int nextGEQOffset(final long[] values, final long v) {
     int lo = 0;
-    int hi = bucket == buckets ? N - 1 : B - 1;
-    
-    while (lo <= hi) {
+    int hi = values.length;
+    while (lo < hi) {
       final int mid = lo + (hi - lo >> 1);
-      final long u = get(bucket, mid);
-      if (integer > u) {
+      if (values[mid] < v) {
         lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  // Returns whether the B integers of the array starting from the specified offset are distinct.
+  private static boolean isStrictlyIncreasing(final long[] buffer, final int offset, final int B) {
+    final int end = offset + B;
+    for (int i = offset + 1; i < end; i++) {
+      if (buffer[i - 1] == buffer[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Encodes the B integers of the array starting from the specified offset relatively to prevUpper
+  // into the given record as a packed bucket. The payload, stored in place of the lower bits, holds
+  // a header word with the width of the gaps, the number of samples and the number of exceptions,
+  // followed by the samples, that is every 64th integer relative to prevUpper, the positions of the
+  // exceptions, two per word, their high bits and finally the low bits of the gaps.
+  protected static CompressedBucket encodePacked(final long[] buffer, final int offset,
+      final int B, final long prevUpper, final CompressedBucket bucket) {
+    // Chooses the width minimizing the space, given the number of gaps needing each width.
+    final int[] widths = new int[Long.SIZE];
+    long prev = prevUpper;
+    for (int i = 0; i < B; i++) {
+      final long v = buffer[offset + i];
+      widths[Long.SIZE - Long.numberOfLeadingZeros(v - prev)]++;
+      prev = v;
+    }
+    int b = 0;
+    int exceptions = B - widths[0];
+    long minCost = (long) exceptions * PACKED_EXCEPTION_COST;
+    int e = exceptions;
+    for (int w = 1; w < Long.SIZE; w++) {
+      e -= widths[w];
+      final long cost = (long) B * w + (long) e * PACKED_EXCEPTION_COST;
+      if (cost < minCost) {
+        minCost = cost;
+        b = w;
+        exceptions = e;
+      }
+    }
+
+    final int samples = (B + (1 << LOG_PACKED_SAMPLING) - 1) >>> LOG_PACKED_SAMPLING;
+    final long bits = (1L + samples) * Long.SIZE + minCost;
+    if (encodeProgression(buffer, offset, B, prevUpper, bits, bucket)
+        || encodeRuns(buffer, offset, B, prevUpper, bits, bucket)) {
+      return bucket;
+    }
+    final int positionsStart = 1 + samples;
+    final int highsStart = positionsStart + (exceptions + 1 >>> 1);
+    final int gapsStart = highsStart + exceptions;
+    final long[] payload = new long[gapsStart + (int) ((long) B * b + Long.SIZE - 1 >>> 6)];
+    // Gaps in between non-negative longs fit 63 bits, hence b fits the 6 low bits of the header.
+    payload[0] = b | (long) samples << 6 | (long) exceptions << 32;
+
+    final long mask = (1L << b) - 1;
+    long position = (long) gapsStart << 6;
+    int exception = 0;
+    prev = prevUpper;
+    for (int i = 0; i < B; i++) {
+      final long v = buffer[offset + i];
+      if ((i & (1 << LOG_PACKED_SAMPLING) - 1) == 0) {
+        payload[1 + (i >>> LOG_PACKED_SAMPLING)] = v - prevUpper;
       }
-      else if (integer < u) {
-        hi = mid - 1;
+      final long gap = v - prev;
+      prev = v;
+      if (b != 0) {
+        final long low = gap & mask;
+        final int word = (int) (position >>> 6);
+        final int bit = (int) (position & 63);
+        payload[word] |= low << bit;
+        if (bit + b > Long.SIZE) {
+          payload[word + 1] |= low >>> -bit;
+        }
+        position += b;
       }
-      else {
-        return u;
+      if (gap >>> b != 0) {
+        payload[positionsStart + (exception >>> 1)] |= (long) i << ((exception & 1) << 5);
+        payload[highsStart + exception++] = gap >>> b;
       }
     }
-     
-    return get(bucket, lo);
+
+    bucket.lowerBits = payload;
+    bucket.selector = EMPTY_SELECTOR;
+    bucket.zeroSelector = EMPTY_SELECTOR;
+    bucket.l = PACKED;
+    return bucket;
   }
-  
-  // Binary search over info array.
-  protected int binarySearchOverInfo(final long integer) {
-    if (integer <= (info.array[0] & UPPER_BITS_MASK) >> 6) {
-      return 0;
+
+  // Returns the number of samples of a packed bucket.
+  private static int packedSamples(final long[] payload) {
+    return (int) (payload[0] >>> 6 & (1L << 26) - 1);
+  }
+
+  // Returns the position of the exception of the given rank of a packed bucket.
+  private static int packedException(final long[] payload, final int positionsStart,
+      final int rank) {
+    return (int) (payload[positionsStart + (rank >>> 1)] >>> ((rank & 1) << 5));
+  }
+
+  // Returns the gap in between the integer at the specified offset of a packed bucket and the
+  // previous one, given the rank of the first exception at or after the offset.
+  private static long packedGap(final long[] payload, final int offset, final int rank) {
+    final long header = payload[0];
+    final int b = (int) (header & LOWER_BITS_MASK);
+    final int exceptions = (int) (header >>> 32);
+    final int positionsStart = 1 + packedSamples(payload);
+    final int highsStart = positionsStart + (exceptions + 1 >>> 1);
+    long gap = 0;
+    if (b != 0) {
+      final long position = ((long) (highsStart + exceptions) << 6) + (long) offset * b;
+      final int word = (int) (position >>> 6);
+      final int bit = (int) (position & 63);
+      gap = payload[word] >>> bit;
+      if (bit + b > Long.SIZE) {
+        gap |= payload[word + 1] << -bit;
+      }
+      gap &= (1L << b) - 1;
     }
-    if (integer >= last) {
-      return buckets;
+    if (rank < exceptions && packedException(payload, positionsStart, rank) == offset) {
+      gap |= payload[highsStart + rank] << b;
+    }
+    return gap;
+  }
+
+  // Returns the integer, relative to prevUpper, at the specified offset of a packed bucket.
+  protected static long getPacked(final long[] payload, final int offset) {
+    final int exceptions = (int) (payload[0] >>> 32);
+    final int positionsStart = 1 + packedSamples(payload);
+    int i = offset & -(1 << LOG_PACKED_SAMPLING);
+    long value = payload[1 + (offset >>> LOG_PACKED_SAMPLING)];
+    int rank = packedExceptionRank(payload, positionsStart, exceptions, i + 1);
+    while (i < offset) {
+      value += packedGap(payload, ++i, rank);
+      if (rank < exceptions && packedException(payload, positionsStart, rank) == i) {
+        rank++;
+      }
     }
-    
+    return value;
+  }
+
+  // Returns the rank of the first exception of a packed bucket at or after the given offset.
+  private static int packedExceptionRank(final long[] payload, final int positionsStart,
+      final int exceptions, final int offset) {
     int lo = 0;
-    int hi = buckets;
-    
-    while (lo <= hi) {
+    int hi = exceptions;
+    while (lo < hi) {
       final int mid = lo + (hi - lo >> 1);
-      final long u1 = (info.array[mid] & UPPER_BITS_MASK) >> 6;
-      if (integer == u1) {
-        return mid - 1;
+      if (packedException(payload, positionsStart, mid) < offset) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  // Decodes count integers of a packed bucket, relative to prevUpper, starting from the specified
+  // offset: the gaps are summed starting from the preceding sample, and patched with the high bits
+  // of the exceptions as they are met.
+  protected static void decodePacked(final long[] payload, final int offset, final long[] dest,
+      final int destOffset, final int count) {
+    final long header = payload[0];
+    final int b = (int) (header & LOWER_BITS_MASK);
+    final int exceptions = (int) (header >>> 32);
+    final int positionsStart = 1 + packedSamples(payload);
+    final int highsStart = positionsStart + (exceptions + 1 >>> 1);
+    final long mask = (1L << b) - 1;
+
+    int i = offset & -(1 << LOG_PACKED_SAMPLING);
+    long value = payload[1 + (offset >>> LOG_PACKED_SAMPLING)];
+    int rank = packedExceptionRank(payload, positionsStart, exceptions, i + 1);
+    int exception = rank < exceptions ? packedException(payload, positionsStart, rank) : -1;
+    long position = ((long) (highsStart + exceptions) << 6) + (long) (i + 1) * b;
+    final int end = offset + count;
+    if (i == offset) {
+      dest[destOffset] = value;
+    }
+    while (++i < end) {
+      long gap = 0;
+      if (b != 0) {
+        final int word = (int) (position >>> 6);
+        final int bit = (int) (position & 63);
+        gap = payload[word] >>> bit;
+        if (bit + b > Long.SIZE) {
+          gap |= payload[word + 1] << -bit;
+        }
+        gap &= mask;
+        position += b;
+      }
+      if (i == exception) {
+        gap |= payload[highsStart + rank] << b;
+        exception = ++rank < exceptions ? packedException(payload, positionsStart, rank) : -1;
       }
-      final long u2 = mid < buckets ? (info.array[mid + 1] & UPPER_BITS_MASK) >> 6 : last;
-      if (integer >= u2 && u2 < last) {
+      value += gap;
+      if (i >= offset) {
+        dest[destOffset + i - offset] = value;
+      }
+    }
+  }
+
+  // Returns the offset, within a packed bucket of the given size, of the first integer that,
+  // relative to prevUpper, is greater than or equal to v; the size of the bucket if there is no
+  // such integer. The samples are binary searched, then the gaps are summed from the last sample
+  // smaller than v.
+  protected static int nextGEQOffsetPacked(final long[] payload, final int size, final long v) {
+    final int samples = packedSamples(payload);
+    int lo = 0;
+    int hi = samples;
+    while (lo < hi) {
+      final int mid = lo + (hi - lo >> 1);
+      if (payload[1 + mid] < v) {
         lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    if (lo == 0) {
+      return 0;
+    }
+
+    final int exceptions = (int) (payload[0] >>> 32);
+    final int positionsStart = 1 + samples;
+    int offset = lo - 1 << LOG_PACKED_SAMPLING;
+    long value = payload[lo];
+    int rank = packedExceptionRank(payload, positionsStart, exceptions, offset + 1);
+    while (value < v && ++offset < size) {
+      value += packedGap(payload, offset, rank);
+      if (rank < exceptions && packedException(payload, positionsStart, rank) == offset) {
+        rank++;
+      }
+    }
+    return offset;
+  }
+
+  // Encodes the B integers of the array starting from the specified offset relatively to prevUpper
+  // into the given record with Elias-Fano. The lower and upper bits are written straight into the
+  // words of their arrays.
+  protected static CompressedBucket encodeEliasFano(final long[] buffer, final int offset,
+      final int B, final long prevUpper, final CompressedBucket bucket) {
+    final long last = buffer[offset + B - 1];
+    final long u = last - prevUpper;
+    final long l = Math.max(0, Fast.mostSignificantBit(u / B));
+    final long upperBitsLength = B + (u >>> l) + 1;
+    final long[] upperBits = new long[(int) (upperBitsLength + Long.SIZE - 1 >>> 6)];
+
+    if (l != 0) {
+      final long lowerBitsMask = (1L << l) - 1;
+      final long[] lowerBits = new long[(int) (B * l + Long.SIZE - 1 >>> 6)];
+      long lowerBitsPosition = 0;
+      long v;
+      for (int i = 0; i < B; i++) {
+        v = buffer[offset + i] - prevUpper;
+        final long low = v & lowerBitsMask;
+        final int word = (int) (lowerBitsPosition >>> 6);
+        final int bit = (int) (lowerBitsPosition & 63);
+        lowerBits[word] |= low << bit;
+        if (bit + l > Long.SIZE) {
+          lowerBits[word + 1] |= low >>> -bit;
+        }
+        lowerBitsPosition += l;
+
+        final long position = (v >>> l) + i;
+        upperBits[(int) (position >>> 6)] |= 1L << position;
       }
-      else if (u1 < integer && integer < u2) {
-        return mid;
+      bucket.lowerBits = lowerBits;
+    } else {
+      for (int i = 0; i < B; i++) {
+        final long position = buffer[offset + i] - prevUpper + i;
+        upperBits[(int) (position >>> 6)] |= 1L << position;
       }
-      else {
-        hi = mid - 1;
+      bucket.lowerBits = EMPTY_LOWER_BITS;
+    }
+
+    final BitVector upperBitsVector = LongArrayBitVector.wrap(upperBits, upperBitsLength);
+    bucket.selector = selector(upperBitsVector);
+    bucket.zeroSelector = zeroSelector(upperBitsVector, bucket.selector);
+    bucket.l = l;
+    return bucket;
+  }
+
+  @Override
+  public boolean addLong(final long integer) {
+    if (last > integer) {
+      throw new IllegalArgumentException("The list of values is not monotone: " + last + " > "
+          + integer + ".");
+    }
+
+    if (N == B) {
+      compress(buffer);
+      N = 0;
+    }
+
+    buffer[N++] = integer;
+    last = integer;
+    length++;
+
+    return true;
+  }
+
+  /**
+   * Builds a sequence from the given sorted integers. The bucket size is chosen according to the
+   * number of integers, the internal arrays are allocated once and the buckets are compressed
+   * straight from the given array.
+   * 
+   * @param integers the non-decreasing integers.
+   * @return a sequence containing the given integers.
+   * @throws IllegalArgumentException if the integers are not monotone.
+   */
+  public static EliasFanoAppendOnlyMonotoneLongSequence build(final long[] integers) {
+    return build(integers, 0, integers.length);
+  }
+
+  /**
+   * Builds a sequence from a range of the given sorted integers. The bucket size is chosen
+   * according to the number of integers, the internal arrays are allocated once and the buckets are
+   * compressed straight from the given array.
+   * 
+   * @param integers the array containing the non-decreasing integers.
+   * @param offset the position of the first integer.
+   * @param length the number of integers.
+   * @return a sequence containing the given integers.
+   * @throws IllegalArgumentException if the integers are not monotone.
+   * @throws IndexOutOfBoundsException if bounds are incorrect.
+   */
+  public static EliasFanoAppendOnlyMonotoneLongSequence build(final long[] integers,
+      final int offset, final int length) {
+    return build(integers, offset, length, null);
+  }
+
+  /**
+   * Builds a sequence from the given sorted integers, compressing the buckets concurrently. Since
+   * each bucket only depends on the last integer of the previous one, ranges of buckets are
+   * compressed by independent tasks and then stitched together.
+   * 
+   * @param integers the non-decreasing integers.
+   * @return a sequence containing the given integers.
+   * @throws IllegalArgumentException if the integers are not monotone.
+   * @see ForkJoinPool#commonPool()
+   */
+  public static EliasFanoAppendOnlyMonotoneLongSequence parallelBuild(final long[] integers) {
+    return build(integers, 0, integers.length, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Builds a sequence from a range of the given sorted integers, compressing the buckets
+   * concurrently on the given pool.
+   * 
+   * @param integers the array containing the non-decreasing integers.
+   * @param offset the position of the first integer.
+   * @param length the number of integers.
+   * @param pool the pool running the compression tasks.
+   * @return a sequence containing the given integers.
+   * @throws IllegalArgumentException if the integers are not monotone.
+   * @throws IndexOutOfBoundsException if bounds are incorrect.
+   * @see #parallelBuild(long[])
+   */
+  public static EliasFanoAppendOnlyMonotoneLongSequence parallelBuild(final long[] integers,
+      final int offset, final int length, final ForkJoinPool pool) {
+    return build(integers, offset, length, pool);
+  }
+
+  // Builds a sequence from a range of sorted integers: buckets are compressed sequentially if no
+  // pool is given, concurrently otherwise.
+  private static EliasFanoAppendOnlyMonotoneLongSequence build(final long[] integers,
+      final int offset, final int length, final ForkJoinPool pool) {
+    if (offset < 0 || length < 0 || offset > integers.length - length) {
+      throw new IndexOutOfBoundsException(offset + " + " + length);
+    }
+    final int end = offset + length;
+    for (int i = offset + 1; i < end; i++) {
+      if (integers[i - 1] > integers[i]) {
+        throw new IllegalArgumentException("The list of values is not monotone: "
+            + integers[i - 1] + " > " + integers[i] + ".");
+      }
+    }
+
+    final int B = bucketSize(length);
+    EliasFanoAppendOnlyMonotoneLongSequence s =
+        length > B ? new EliasFanoAppendOnlyMonotoneLongSequence(B, length)
+            : new EliasFanoAppendOnlyMonotoneLongSequence(B);
+    if (length == 0) {
+      return s;
+    }
+
+    // The last, possibly full, bucket is left uncompressed in the buffer.
+    final int buckets = (length - 1) / B;
+    if (pool == null || buckets < 2) {
+      for (int i = 0; i < buckets; i++) {
+        s.compress(integers, offset + i * B, B);
+      }
+    } else {
+      final CompressedBucket[] encoded = new CompressedBucket[buckets];
+      final int threshold = Math.max(1, buckets / (pool.getParallelism() << 2));
+      pool.invoke(new CompressionTask(integers, offset, B, encoded, 0, buckets, threshold));
+      for (int i = 0; i < buckets; i++) {
+        s.append(encoded[i], i == 0 ? 0 : integers[offset + i * B - 1],
+            integers[offset + (i + 1) * B - 1]);
+      }
+    }
+    s.N = length - buckets * B;
+    System.arraycopy(integers, offset + buckets * B, s.buffer, 0, s.N);
+    s.last = integers[end - 1];
+    s.length = length;
+    return s;
+  }
+
+  // Task compressing a range of buckets of an array, splitting it while it is above a threshold.
+  static private class CompressionTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    final long[] integers;
+    final int offset;
+    final int B;
+    final CompressedBucket[] encoded;
+    final int from;
+    final int to;
+    final int threshold;
+
+    CompressionTask(final long[] integers, final int offset, final int B,
+        final CompressedBucket[] encoded, final int from, final int to, final int threshold) {
+      this.integers = integers;
+      this.offset = offset;
+      this.B = B;
+      this.encoded = encoded;
+      this.from = from;
+      this.to = to;
+      this.threshold = threshold;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= threshold) {
+        for (int i = from; i < to; i++) {
+          final int start = offset + i * B;
+          encoded[i] =
+              encode(integers, start, B, i == 0 ? 0 : integers[start - 1], new CompressedBucket());
+        }
+        return;
+      }
+      final int mid = (from + to) >>> 1;
+      invokeAll(new CompressionTask(integers, offset, B, encoded, from, mid, threshold),
+          new CompressionTask(integers, offset, B, encoded, mid, to, threshold));
+    }
+  }
+
+  /**
+   * Builds a sequence from the given stream of sorted integers. If the size of the stream is known,
+   * the bucket size is chosen according to it and the integers are appended as they are consumed;
+   * otherwise the stream is first collected into an array.
+   * 
+   * @param integers the stream of non-decreasing integers.
+   * @return a sequence containing the integers of the stream.
+   * @throws IllegalArgumentException if the integers are not monotone.
+   * @see #build(long[])
+   */
+  public static EliasFanoAppendOnlyMonotoneLongSequence build(final LongStream integers) {
+    final Spliterator.OfLong spliterator = integers.spliterator();
+    final long size = spliterator.getExactSizeIfKnown();
+    if (size < 0 || size > Integer.MAX_VALUE) {
+      return build(StreamSupport.longStream(spliterator, false).toArray());
+    }
+
+    final EliasFanoAppendOnlyMonotoneLongSequence s = withExpectedSize((int) size);
+    spliterator.forEachRemaining(new LongConsumer() {
+      @Override
+      public void accept(final long integer) {
+        s.addLong(integer);
+      }
+    });
+    return s;
+  }
+
+  /**
+   * Builds a sequence from the given iterator over sorted integers. The bucket size is chosen
+   * according to the expected number of integers, which does not need to be exact.
+   * 
+   * @param integers the iterator over non-decreasing integers.
+   * @param expectedSize the expected number of integers.
+   * @return a sequence containing the integers returned by the iterator.
+   * @throws IllegalArgumentException if the integers are not monotone.
+   */
+  public static EliasFanoAppendOnlyMonotoneLongSequence build(final LongIterator integers,
+      final int expectedSize) {
+    EliasFanoAppendOnlyMonotoneLongSequence s = withExpectedSize(expectedSize);
+    while (integers.hasNext()) {
+      s.addLong(integers.nextLong());
+    }
+    return s;
+  }
+
+  // Creates an empty sequence sized for the given number of integers.
+  private static EliasFanoAppendOnlyMonotoneLongSequence withExpectedSize(final int size) {
+    final int B = bucketSize(size);
+    return size > B ? new EliasFanoAppendOnlyMonotoneLongSequence(B, size)
+        : new EliasFanoAppendOnlyMonotoneLongSequence(B);
+  }
+
+  // Returns the bucket size used for a sequence of the given length.
+  protected static int bucketSize(final long length) {
+    return (int) Math.ceil(Math.sqrt(Math.max(1L, length << 3)));
+  }
+
+  /**
+   * Packs the sequence into a frozen {@link EliasFanoCompactMonotoneLongSequence} that stores all
+   * its buckets in a few contiguous arrays. Arithmetic progression and runs buckets keep their
+   * encoding, while any other coded bucket is re-encoded with Elias-Fano. This sequence is left
+   * untouched.
+   * 
+   * @return a compact copy of the sequence.
+   */
+  public EliasFanoCompactMonotoneLongSequence freeze() {
+    return new EliasFanoCompactMonotoneLongSequence(this);
+  }
+
+  /**
+   * Packs the sequence into a frozen {@link EliasFanoCompactMonotoneLongSequence}, optionally
+   * storing the upper bounds and the numbers of lower bits of its buckets in an
+   * {@link EliasFanoDirectory}. This sequence is left untouched.
+   * 
+   * @param compressDirectory whether the information of the buckets is compressed.
+   * @return a compact copy of the sequence.
+   */
+  public EliasFanoCompactMonotoneLongSequence freeze(final boolean compressDirectory) {
+    return new EliasFanoCompactMonotoneLongSequence(this, compressDirectory);
+  }
+
+  /**
+   * Moves the compressed buckets to the cold tier, re-encoding each of them with binary
+   * interpolative coding whenever this saves space. Cold buckets are decoded on demand by
+   * <tt>get</tt>, <tt>next greater or equal</tt> and the iterators, hence accessing them is much
+   * slower, but the most recently accessed ones are cached. Buckets compressed afterwards stay in
+   * the hot tier, hence the method is best called once the sequence is complete.
+   * 
+   * @return the number of buckets moved to the cold tier.
+   * @see #thaw()
+   */
+  public int freezeCold() {
+    final long[] values = new long[B];
+    int cold = 0;
+    for (int i = 0; i < buckets; i++) {
+      final long lu = info.array[i];
+      if ((lu & LOWER_BITS_MASK) == INTERPOLATIVE) {
+        continue;
+      }
+      decode(i, 0, values, 0, B);
+      final long[] payload = encodeInterpolative(values, 0, B, (lu & UPPER_BITS_MASK) >> 6);
+      final Select selector = selectors.get(i);
+      final SelectZero zeroSelector = zeroSelectors.get(i);
+      final long bits =
+          lowerBits.get(i).length * Long.SIZE + selector.numBits()
+              + (zeroSelector != selector ? zeroSelector.numBits() : 0)
+              + selector.bitVector().length();
+      if ((long) payload.length * Long.SIZE < bits) {
+        lowerBits.set(i, payload);
+        selectors.set(i, EMPTY_SELECTOR);
+        zeroSelectors.set(i, EMPTY_SELECTOR);
+        info.array[i] = lu & UPPER_BITS_MASK | INTERPOLATIVE;
+        cold++;
+      }
+    }
+    coldCache = null;
+    return cold;
+  }
+
+  /**
+   * Brings the buckets of the cold tier back to the hot tier, compressing each of them again as if
+   * it was just appended.
+   * 
+   * @see #freezeCold()
+   */
+  public void thaw() {
+    final long[] values = new long[B];
+    if (scratch == null) {
+      scratch = new CompressedBucket();
+    }
+    for (int i = 0; i < buckets; i++) {
+      final long lu = info.array[i];
+      if ((lu & LOWER_BITS_MASK) != INTERPOLATIVE) {
+        continue;
+      }
+      final long prevUpper = (lu & UPPER_BITS_MASK) >> 6;
+      final long[] relative = decodeInterpolative(lowerBits.get(i));
+      for (int j = 0; j < B; j++) {
+        values[j] = relative[j] + prevUpper;
+      }
+      final CompressedBucket bucket =
+          packed ? encodePacked(values, 0, B, prevUpper, scratch) : encode(values, 0, B,
+              prevUpper, scratch);
+      lowerBits.set(i, bucket.lowerBits);
+      selectors.set(i, bucket.selector);
+      zeroSelectors.set(i, bucket.zeroSelector);
+      info.array[i] = lu & UPPER_BITS_MASK | bucket.l;
+    }
+    coldCache = null;
+  }
+
+  // Returns the integers of the specified cold bucket, decoding it into the cache if it is not
+  // there already.
+  private long[] coldBucket(final int bucket) {
+    ColdBucket[] cache = coldCache;
+    if (cache == null) {
+      coldCache = cache = new ColdBucket[COLD_CACHE_SIZE];
+    }
+    final int slot = bucket % COLD_CACHE_SIZE;
+    final ColdBucket entry = cache[slot];
+    if (entry != null && entry.bucket == bucket) {
+      return entry.values;
+    }
+
+    final long u = (info.array[bucket] & UPPER_BITS_MASK) >> 6;
+    final long[] values = decodeInterpolative(lowerBits.get(bucket));
+    for (int i = 0; i < values.length; i++) {
+      values[i] += u;
+    }
+    cache[slot] = new ColdBucket(bucket, values);
+    return values;
+  }
+
+  /**
+   * Appends the given integers to the sequence. The integers are copied straight into the buffer of
+   * the last bucket, which is compressed as soon as it is full, without boxing them.
+   * 
+   * @param integers the array containing the integers to be appended.
+   * @param offset the position of the first integer to be appended.
+   * @param count the number of integers to be appended.
+   * @throws IllegalArgumentException if the integers are not monotone.
+   * @throws IndexOutOfBoundsException if bounds are incorrect.
+   */
+  public void addLongs(final long[] integers, final int offset, final int count) {
+    if (offset < 0 || count < 0 || offset > integers.length - count) {
+      throw new IndexOutOfBoundsException(offset + " + " + count);
+    }
+
+    final int B = this.B;
+    final long[] buffer = this.buffer;
+    int from = offset;
+    final int end = offset + count;
+    while (from < end) {
+      if (N == B) {
+        compress(buffer);
+        N = 0;
+      }
+
+      final int n = Math.min(B - N, end - from);
+      long prev = last;
+      for (int i = from; i < from + n; i++) {
+        if (prev > integers[i]) {
+          throw new IllegalArgumentException("The list of values is not monotone: " + prev + " > "
+              + integers[i] + ".");
+        }
+        prev = integers[i];
+      }
+
+      System.arraycopy(integers, from, buffer, N, n);
+      N += n;
+      last = prev;
+      length += n;
+      from += n;
+    }
+  }
+
+  // Appends verbatim count compressed buckets of the given sequence, starting from the specified
+  // one, to this sequence, which must have the same bucket size, an empty or full buffer and, unless
+  // it is empty, the upper bound of the bucket preceding the first one as its last integer.
+  // Compressed buckets are never modified, so their lower bits and selectors are shared rather than
+  // copied.
+  protected void appendBuckets(final EliasFanoAppendOnlyMonotoneLongSequence s, final int first,
+      final int count) {
+    if (count == 0) {
+      return;
+    }
+    if (N == B) {
+      compress(buffer);
+      N = 0;
+    }
+    if (N != 0 || s.B != B || first + count > s.buckets
+        || length != 0 && (first == 0 || last != s.upperBound(first - 1))) {
+      throw new IllegalArgumentException();
+    }
+
+    final long[] from = s.info.array;
+    for (int i = first; i < first + count; i++) {
+      lowerBits.add(s.lowerBits.get(i));
+      selectors.add(s.selectors.get(i));
+      zeroSelectors.add(s.zeroSelectors.get(i));
+      info.array[buckets++] = from[i];
+      info.add(from[i + 1] & UPPER_BITS_MASK);
+    }
+    last = s.upperBound(first + count - 1);
+    length += count * B;
+  }
+
+  @Override
+  public long getLong(final int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("" + index);
+    }
+    final int B = this.B;
+    final int bucket = index / B;
+    final int offset = index % B;
+    return get(bucket, offset);
+  }
+
+  protected long get(final int bucket, final int offset) {
+    if (bucket == selectors.size()) {
+      return buffer[offset];
+    }
+    if ((info.array[bucket] & LOWER_BITS_MASK) == INTERPOLATIVE) {
+      return coldBucket(bucket)[offset];
+    }
+    return get(info.array[bucket], selectors.get(bucket), lowerBits.get(bucket), offset);
+  }
+
+  // Returns the integer at the specified offset of a compressed bucket, given its info word, the
+  // selector over its upper bits and its lower bits.
+  protected static long get(final long lu, final Select selector, final long[] lowerBitsVector,
+      final int offset) {
+    final long l = lu & LOWER_BITS_MASK;
+    final long u = (lu & UPPER_BITS_MASK) >> 6;
+    if (l >= MIN_CODE) {
+      if (l == PACKED) {
+        return getPacked(lowerBitsVector, offset) + u;
+      }
+      if (l == PROGRESSION) {
+        return getProgression(lowerBitsVector, offset) + u;
+      }
+      if (l == RUNS) {
+        return getRuns(lowerBitsVector, offset) + u;
+      }
+      if (l == INTERPOLATIVE) {
+        return decodeInterpolative(lowerBitsVector)[offset] + u;
+      }
+      return l == FULL_RUN ? u + 1 + offset : selector.select(offset) + u;
+    }
+    final long upperBits = selector.select(offset) - offset;
+
+    if (l == 0) {
+      return upperBits + u;
+    }
+
+    return (upperBits << l | lowerBits(lowerBitsVector, l, offset)) + u;
+  }
+
+  @Override
+  public void decode(final int from, final long[] dest, final int destOffset, final int count) {
+    checkDecodeBounds(from, dest, destOffset, count);
+    int bucket = from / B;
+    int offset = from % B;
+    int pos = destOffset;
+    int left = count;
+    while (left > 0) {
+      final int n = Math.min(left, B - offset);
+      if (bucket == buckets) {
+        System.arraycopy(buffer, offset, dest, pos, n);
+      } else {
+        decode(bucket, offset, dest, pos, n);
+      }
+      pos += n;
+      left -= n;
+      offset = 0;
+      bucket++;
+    }
+  }
+
+  // Splits on the bucket boundary closest to the middle of the range.
+  @Override
+  protected int splitPoint(final int from, final int to) {
+    final int mid = (from + to) >>> 1;
+    final int B = this.B;
+    final int aligned = mid - mid % B;
+    return (aligned > from && mid - aligned <= B >>> 1) || aligned + B >= to ? aligned
+        : aligned + B;
+  }
+
+  // Decodes count integers of a compressed bucket, starting from the specified offset: the upper
+  // bits are scanned one word at a time, then the lower bits are merged in a separate loop.
+  protected void decode(final int bucket, final int offset, final long[] dest,
+      final int destOffset, final int count) {
+    if ((info.array[bucket] & LOWER_BITS_MASK) == INTERPOLATIVE) {
+      System.arraycopy(coldBucket(bucket), offset, dest, destOffset, count);
+      return;
+    }
+    decode(info.array[bucket], selectors.get(bucket), lowerBits.get(bucket), offset, dest,
+        destOffset, count);
+  }
+
+  // Decodes count integers of a compressed bucket, given its info word, the selector over its upper
+  // bits and its lower bits, starting from the specified offset.
+  protected static void decode(final long lu, final Select selector, final long[] lowerBitsVector,
+      final int offset, final long[] dest, final int destOffset, final int count) {
+    final long l = lu & LOWER_BITS_MASK;
+    final long u = (lu & UPPER_BITS_MASK) >> 6;
+    final int end = destOffset + count;
+    if (l == FULL_RUN) {
+      long value = u + 1 + offset;
+      for (int i = destOffset; i < end; i++) {
+        dest[i] = value++;
+      }
+      return;
+    }
+    if (l == PACKED || l == PROGRESSION || l == RUNS || l == INTERPOLATIVE) {
+      if (l == PACKED) {
+        decodePacked(lowerBitsVector, offset, dest, destOffset, count);
+      } else if (l == PROGRESSION) {
+        decodeProgression(lowerBitsVector, 0, lowerBitsVector.length, offset, dest, destOffset,
+            count);
+      } else if (l == RUNS) {
+        decodeRuns(lowerBitsVector, offset, dest, destOffset, count);
+      } else {
+        System.arraycopy(decodeInterpolative(lowerBitsVector), offset, dest, destOffset, count);
+      }
+      for (int i = destOffset; i < end; i++) {
+        dest[i] += u;
+      }
+      return;
+    }
+
+    final long[] upperBits = selector.bitVector().bits();
+    final long first = selector.select(offset);
+    // Positions of the ones of a bitmap are the integers themselves, while those of the upper bits
+    // are shifted by the number of preceding integers.
+    final long shift = l == BITMAP ? 0 : 1;
+
+    int word = (int) (first >>> 6);
+    long bits = upperBits[word] & -1L << first;
+    long high = (long) word * Long.SIZE - offset * shift;
+    for (int i = destOffset; i < end; i++) {
+      while (bits == 0) {
+        bits = upperBits[++word];
+        high += Long.SIZE;
+      }
+      dest[i] = high + Long.numberOfTrailingZeros(bits);
+      bits &= bits - 1;
+      high -= shift;
+    }
+
+    if (l == 0 || l == BITMAP) {
+      for (int i = destOffset; i < end; i++) {
+        dest[i] += u;
+      }
+      return;
+    }
+
+    final long lowerBitsMask = (1L << l) - 1;
+    long lowerBitsPosition = offset * l;
+    for (int i = destOffset; i < end; i++) {
+      final int startWord = (int) (lowerBitsPosition >>> 6);
+      final int startBit = (int) (lowerBitsPosition & 63);
+      long result = lowerBitsVector[startWord] >>> startBit;
+      if (startBit + l > Long.SIZE) {
+        result |= lowerBitsVector[startWord + 1] << -startBit;
+      }
+      dest[i] = (dest[i] << l | result & lowerBitsMask) + u;
+      lowerBitsPosition += l;
+    }
+  }
+
+  // Extracts the l lower bits of the integer at the specified offset of a bucket.
+  protected static long lowerBits(final long[] lowerBitsVector, final long l, final int offset) {
+    final int LONG_SIZE = Long.SIZE;
+    final long lowerBitsPosition = offset * l;
+    final int startWord = (int) (lowerBitsPosition / LONG_SIZE);
+    final int startBit = (int) (lowerBitsPosition % LONG_SIZE);
+    final long totalOffset = startBit + l;
+    final long result = lowerBitsVector[startWord] >>> startBit;
+    return (totalOffset <= LONG_SIZE ? result : result | lowerBitsVector[startWord + 1] << -startBit)
+        & (1L << l) - 1;
+  }
+
+  @Override
+  public long nextGEQLong(final long integer) {
+    if (length == 0 || integer > last) {
+      return -1L;
+    }
+    final int bucket = binarySearchOverInfo(integer);
+    return get(bucket, nextGEQOffset(bucket, integer));
+  }
+
+  @Override
+  public int rank(final long integer) {
+    if (length == 0 || integer > last) {
+      return length;
+    }
+    final int bucket = binarySearchOverInfo(integer);
+    return bucket * B + nextGEQOffset(bucket, integer);
+  }
+
+  @Override
+  public long prevLEQ(final long integer) {
+    if (length == 0) {
+      return -1L;
+    }
+    if (integer >= last) {
+      return last;
+    }
+    final long successor = integer + 1;
+    final int bucket = binarySearchOverInfo(successor);
+    final int offset = nextGEQOffset(bucket, successor);
+    if (offset > 0) {
+      return get(bucket, offset - 1);
+    }
+    return bucket > 0 ? upperBound(bucket - 1) : -1L;
+  }
+
+  // Returns the offset, within the specified bucket, of the first integer greater than or equal to
+  // the given one; the bucket size if there is no such integer. Compressed buckets are searched
+  // with the Elias-Fano successor algorithm: a select0 on the upper bits jumps to the first integer
+  // sharing the same upper bits of the query, then a forward scan compares the lower bits.
+  protected int nextGEQOffset(final int bucket, final long integer) {
+    if (bucket == buckets) {
+      int lo = 0;
+      int hi = N - 1;
+      while (lo <= hi) {
+        final int mid = lo + (hi - lo >> 1);
+        if (buffer[mid] < integer) {
+          lo = mid + 1;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      return lo;
+    }
+    if ((info.array[bucket] & LOWER_BITS_MASK) == INTERPOLATIVE) {
+      return nextGEQOffset(coldBucket(bucket), integer);
+    }
+
+    return nextGEQOffset(info.array[bucket], selectors.get(bucket), zeroSelectors.get(bucket),
+        lowerBits.get(bucket), B, integer);
+  }
+
+  // Returns the offset, within a compressed bucket of the given size, of the first integer greater
+  // than or equal to the given one; the size of the bucket if there is no such integer. The bucket
+  // is given by its info word, the selectors over its upper bits and its lower bits.
+  protected static int nextGEQOffset(final long lu, final Select selector,
+      final SelectZero zeroSelector, final long[] lowerBitsVector, final int size,
+      final long integer) {
+    final long prevUpper = (lu & UPPER_BITS_MASK) >> 6;
+    if (integer <= prevUpper) {
+      return 0;
+    }
+
+    final long l = lu & LOWER_BITS_MASK;
+    final long v = integer - prevUpper;
+    if (l >= MIN_CODE) {
+      if (l == FULL_RUN) {
+        return v <= size ? (int) v - 1 : size;
+      }
+      if (l == PACKED) {
+        return nextGEQOffsetPacked(lowerBitsVector, size, v);
+      }
+      if (l == PROGRESSION) {
+        return nextGEQOffsetProgression(lowerBitsVector, size, v);
+      }
+      if (l == RUNS) {
+        return nextGEQOffsetRuns(lowerBitsVector, v);
+      }
+      if (l == INTERPOLATIVE) {
+        return nextGEQOffset(decodeInterpolative(lowerBitsVector), v);
+      }
+      // Bitmaps are always indexed by a SmallSelect, which supports rank as well.
+      return v < selector.bitVector().length() ? (int) ((SmallSelect) selector).rank(v) : size;
+    }
+    final long high = v >>> l;
+    final BitVector upperBitsVector = selector.bitVector();
+
+    if (high >= upperBitsVector.length() - size) { // greater than the upper bits of the maximum
+      return size;
+    }
+
+    final long[] upperBits = upperBitsVector.bits();
+    long position = high == 0 ? 0 : zeroSelector.selectZero(high - 1) + 1;
+    int offset = (int) (position - high);
+
+    if (l == 0) {
+      return offset;
+    }
+
+    final long low = v & (1L << l) - 1;
+    while (offset < size && (upperBits[(int) (position >>> 6)] & 1L << position) != 0) {
+      if (lowerBits(lowerBitsVector, l, offset) >= low) {
+        return offset;
+      }
+      offset++;
+      position++;
+    }
+    return offset;
+  }
+
+  // Returns the maximum integer of the specified bucket.
+  protected long upperBound(final int bucket) {
+    return bucket < buckets ? (info.array[bucket + 1] & UPPER_BITS_MASK) >> 6 : last;
+  }
+
+  /**
+   * Returns a forward-only cursor over the sequence, positioned before its first integer. The cursor
+   * remembers its current bucket and offset: each call to
+   * {@link MonotoneLongSequenceCursor#advanceTo(long)} gallops over the buckets starting from the
+   * current one and then jumps inside the target bucket with the Elias-Fano successor algorithm.
+   * 
+   * @return a cursor over the sequence.
+   */
+  @Override
+  public MonotoneLongSequenceCursor cursor() {
+    return new EliasFanoAppendOnlyMonotoneLongSequenceCursor();
+  }
+
+  private class EliasFanoAppendOnlyMonotoneLongSequenceCursor implements
+      MonotoneLongSequenceCursor {
+    int bucket = 0;
+    int offset = -1;
+    int position = -1;
+    long value = -1L;
+
+    @Override
+    public long advanceTo(final long integer) {
+      if (position >= length) {
+        return -1L;
+      }
+      if (position >= 0 && value >= integer) {
+        return value;
+      }
+      if (integer > last) {
+        return exhaust();
+      }
+
+      int lo = bucket;
+      if (upperBound(lo) < integer) {
+        // Galloping search: upperBound(lo) < integer <= upperBound(hi).
+        int step = 1;
+        int hi = lo + 1;
+        while (hi < buckets && upperBound(hi) < integer) {
+          lo = hi;
+          step <<= 1;
+          hi = lo + step;
+        }
+        if (hi > buckets) {
+          hi = buckets;
+        }
+        while (hi - lo > 1) {
+          final int mid = lo + (hi - lo >> 1);
+          if (upperBound(mid) < integer) {
+            lo = mid;
+          } else {
+            hi = mid;
+          }
+        }
+        bucket = hi;
+      }
+
+      offset = nextGEQOffset(bucket, integer);
+      position = bucket * B + offset;
+      return value = get(bucket, offset);
+    }
+
+    @Override
+    public long next() {
+      if (position + 1 >= length) {
+        return exhaust();
+      }
+      if (++offset == B) {
+        bucket++;
+        offset = 0;
+      }
+      position++;
+      return value = get(bucket, offset);
+    }
+
+    private long exhaust() {
+      position = length;
+      return value = -1L;
+    }
+
+    @Override
+    public long value() {
+      return value;
+    }
+
+    @Override
+    public int position() {
+      return position;
+    }
+  }
+  
+  /**
+   * Builds a read-optimized directory over the upper bounds of the buckets compressed so far, used
+   * to locate buckets by <em>next greater or equal</em>, <tt>contains</tt> and <tt>rank</tt>
+   * queries. Buckets compressed afterwards are searched by a plain binary search, hence the method
+   * is best called once the sequence is complete. Replaces any model built by
+   * {@link #optimizeSearch(int)}.
+   * 
+   * @see EytzingerDirectory
+   */
+  public void optimizeSearch() {
+    directory = new EytzingerDirectory(upperBounds(), buckets);
+    model = null;
+  }
+
+  /**
+   * Builds a piecewise-linear model of the upper bounds of the buckets compressed so far, used to
+   * predict the bucket located by <em>next greater or equal</em>, <tt>contains</tt> and
+   * <tt>rank</tt> queries: the prediction is then corrected by a binary search over the
+   * <tt>2 * epsilon + 2</tt> buckets around it. On evenly distributed integers the model takes a
+   * handful of segments, thus its space, accounted for by {@link #bits()}, is negligible. Buckets
+   * compressed afterwards are searched by a plain binary search, hence the method is best called
+   * once the sequence is complete. Replaces any directory built by {@link #optimizeSearch()}.
+   * 
+   * @param epsilon the maximum error of the prediction, in buckets.
+   * @throws IllegalArgumentException if <tt>epsilon</tt> is negative.
+   * @see PiecewiseLinearDirectory
+   * @see #searchEpsilon()
+   */
+  public void optimizeSearch(final int epsilon) {
+    model = new PiecewiseLinearDirectory(upperBounds(), buckets, epsilon);
+    directory = null;
+  }
+
+  /**
+   * Returns the maximum error, in buckets, of the model built by {@link #optimizeSearch(int)}, which
+   * bounds the number of buckets searched by a query to <tt>2 * epsilon + 2</tt>.
+   * 
+   * @return the maximum error of the model, or <tt>-1</tt> if no model is built.
+   */
+  public int searchEpsilon() {
+    final PiecewiseLinearDirectory model = this.model;
+    return model != null ? model.epsilon() : -1;
+  }
+
+  /**
+   * Returns the number of segments of the model built by {@link #optimizeSearch(int)}.
+   * 
+   * @return the number of segments of the model, or <tt>0</tt> if no model is built.
+   */
+  public int searchSegments() {
+    final PiecewiseLinearDirectory model = this.model;
+    return model != null ? model.segments() : 0;
+  }
+
+  // Returns the upper bounds of the buckets compressed so far.
+  private long[] upperBounds() {
+    final int buckets = this.buckets;
+    final long[] upperBounds = new long[buckets];
+    for (int i = 0; i < buckets; i++) {
+      upperBounds[i] = (info.array[i + 1] & UPPER_BITS_MASK) >> 6;
+    }
+    return upperBounds;
+  }
+
+  // Binary search over info array: returns the first bucket whose maximum integer is greater than
+  // or equal to the given one, or the buffer if there is no such bucket. The buckets covered by the
+  // directory, or by the model, are searched through it.
+  protected int binarySearchOverInfo(final long integer) {
+    int lo = 0;
+    int hi = buckets;
+    final EytzingerDirectory directory = this.directory;
+    final PiecewiseLinearDirectory model = this.model;
+    if (directory != null) {
+      lo = directory.lowerBound(integer);
+      if (lo < directory.size()) {
+        return lo;
+      }
+    } else if (model != null) {
+      final int segment = model.segment(integer);
+      if (segment >= 0) {
+        // The bucket is past the start of the segment and not past the start of the next one, and
+        // it is within the window around the prediction as long as the bounds of the window agree.
+        final int start = model.start(segment);
+        final int end = model.start(segment + 1);
+        final int prediction = model.predict(segment, integer);
+        final int epsilon = model.epsilon();
+        final int left = prediction - epsilon > start ? prediction - epsilon : start + 1;
+        final int right = prediction + epsilon + 1 < end ? prediction + epsilon + 1 : end;
+        lo = (info.array[left] & UPPER_BITS_MASK) >> 6 < integer ? left : start + 1;
+        if (right < end && (info.array[right + 1] & UPPER_BITS_MASK) >> 6 >= integer) {
+          hi = right;
+        } else if (end < model.size()) {
+          hi = end;
+        }
+      } else if (model.size() > 0) {
+        return 0;
+      }
+    }
+    while (lo < hi) {
+      final int mid = lo + (hi - lo >> 1);
+      if ((info.array[mid + 1] & UPPER_BITS_MASK) >> 6 < integer) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
       }
     }
-    return -1;
+    return lo;
   }
 
   @Override
   public List<Long> subList(final int from, final int to) {
     checkIndices(from, to);
-    final int B = (int) Math.ceil(Math.sqrt(length << 3));
+    final int B = bucketSize(length);
     final int length = to - from >= B ? to - from : B;
 
     EliasFanoAppendOnlyMonotoneLongSequence subList =
-        new EliasFanoAppendOnlyMonotoneLongSequence(B, length);
+        new EliasFanoAppendOnlyMonotoneLongSequence(B, length, packed);
 
-    Iterator<Long> it = this.iterator(from, to);
+    LongIterator it = this.iterator(from, to);
     while (it.hasNext()) {
-      subList.add(it.next());
+      subList.addLong(it.nextLong());
     }
     return subList;
   }
@@ -464,11 +2091,16 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
     final int buckets = this.buckets;
     final int LONG_SIZE = Long.SIZE;
     for (int i = 0; i < buckets; i++) {
+      final Select selector = selectors.get(i);
+      final SelectZero zeroSelector = zeroSelectors.get(i);
       bits +=
-          lowerBits.get(i).length * LONG_SIZE + selectors.get(i).numBits()
-              + selectors.get(i).bitVector().length();
+          lowerBits.get(i).length * LONG_SIZE + selector.numBits()
+              + (zeroSelector != selector ? zeroSelector.numBits() : 0)
+              + selector.bitVector().length();
     }
-    return bits + info.bits() + B * LONG_SIZE + selectors.capacity() * 64;
+    return bits + info.bits() + B * LONG_SIZE + selectors.capacity() * 64
+        + zeroSelectors.capacity() * 64 + (directory != null ? directory.bits() : 0)
+        + (model != null ? model.bits() : 0);
   }
 
   @Override
@@ -479,6 +2111,7 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
       buffer = temp;
     }
     selectors.trimToSize();
+    zeroSelectors.trimToSize();
     lowerBits.trimToSize();
     info.trimToSize();
   }
@@ -486,7 +2119,7 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
   // Private constructor used in AppendOnlyEliasFano.clone().
   private EliasFanoAppendOnlyMonotoneLongSequence(int B, int length, int N, int buckets, long last,
       long[] buffer, LongDynamicArray info, DynamicArray<long[]> lowerBits,
-      DynamicArray<SimpleSelect> selectors) {
+      DynamicArray<Select> selectors) {
     this.B = B;
     this.length = length;
     this.N = N;
@@ -494,17 +2127,21 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
     this.last = last;
 
     DynamicArray<long[]> lowerBitsClone = new DynamicArray<long[]>(buckets);
-    DynamicArray<SimpleSelect> selectorsClone =
-        new DynamicArray<SimpleSelect>(buckets);
+    DynamicArray<Select> selectorsClone = new DynamicArray<Select>(buckets);
+    DynamicArray<SelectZero> zeroSelectorsClone = new DynamicArray<SelectZero>(buckets);
     LongDynamicArray infoClone = new LongDynamicArray(buckets);
 
     for (int i = 0; i < buckets; i++) {
       lowerBitsClone.add(lowerBits.get(i).clone());
-      selectorsClone.add(new SimpleSelect(selectors.get(i).bitVector().copy()));
+      final BitVector upperBits = selectors.get(i).bitVector().copy();
+      final Select selector = selector(upperBits);
+      selectorsClone.add(selector);
+      zeroSelectorsClone.add(zeroSelector(upperBits, selector));
       infoClone.add(info.array[i]);
     }
     this.lowerBits = lowerBitsClone;
     this.selectors = selectorsClone;
+    this.zeroSelectors = zeroSelectorsClone;
     this.info = infoClone;
     this.buffer = buffer.clone();
   }
@@ -516,7 +2153,10 @@ public final class EliasFanoAppendOnlyMonotoneLongSequence extends
    */
   @Override
   public EliasFanoAppendOnlyMonotoneLongSequence clone() {
-    return new EliasFanoAppendOnlyMonotoneLongSequence(B, length, N, buckets, last, buffer, info,
-        lowerBits, selectors);
+    EliasFanoAppendOnlyMonotoneLongSequence clone =
+        new EliasFanoAppendOnlyMonotoneLongSequence(B, length, N, buckets, last, buffer, info,
+            lowerBits, selectors);
+    clone.packed = packed;
+    return clone;
   }
 }
@@ -0,0 +1,649 @@
+/*
+ * 
+ * Copyright (C) 2014 Giulio Ermanno Pibiri
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.unipi.di;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.fastutil.longs.AbstractLongIterator;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+/**
+ * The <tt>EliasFanoCompactMonotoneLongSequence</tt> class represents a <em>frozen</em> monotone
+ * sequence of non-decreasing integers compressed with the <em>Elias-Fano integer encoding</em>. It
+ * is obtained from an {@link EliasFanoAppendOnlyMonotoneLongSequence} and keeps its buckets, but
+ * packs the upper and lower bits of all of them into a single array of words, addressed through
+ * per-bucket word offsets: the upper bits of a bucket start at its first word, while its lower bits
+ * end at its last one. Select queries are answered by means of the number of ones preceding each
+ * block of eight words of the upper bits, rather than by a selector object per bucket, so that the
+ * whole sequence is made of a handful of objects regardless of its length and buckets spanning a
+ * single block need no counts at all. Buckets are located by an {@link EytzingerDirectory} over the
+ * upper bound of one bucket every eight, followed by a binary search among those eight buckets.
+ * Buckets storing an arithmetic progression or runs of equal integers keep their payload words in
+ * place of the bits, while any other coded bucket is re-encoded as an Elias-Fano one.
+ * 
+ * <p>
+ * Optionally, the per-bucket information can be compressed as well: the upper bounds of the buckets
+ * are then stored as an Elias-Fano sequence, with the number of lower bits of each bucket packed
+ * alongside, in an {@link EliasFanoDirectory}. This two-level structure takes a few bits per bucket
+ * rather than a few words, so that small buckets become affordable, but locating a bucket and
+ * reading its information cost a select query each.
+ * </p>
+ * 
+ * <p>
+ * It supports the <em>get</em> and <em>next greater or equal</em> operations, along with methods
+ * for inspecting how many bits the sequence is using, testing if the sequence is empty, and
+ * iterating through the items in order. The sequence cannot be modified.
+ * </p>
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public final class EliasFanoCompactMonotoneLongSequence extends
+    AbstractAppendOnlyMonotoneLongSequence implements Serializable {
+  // Serial ID number.
+  private transient static final long serialVersionUID = 13071990L;
+
+  // Base 2 logarithm of the number of words of a block of upper bits.
+  protected transient static final int LOG_BLOCK_WORDS = 3;
+
+  // Number of bits of a block of upper bits.
+  protected transient static final int BLOCK_BITS = Long.SIZE << LOG_BLOCK_WORDS;
+
+  // Base 2 logarithm of the number of buckets whose upper bounds are represented by a single key of
+  // the directory.
+  protected transient static final int LOG_DIRECTORY_SAMPLING = 3;
+
+  // Number of buckets whose upper bounds are represented by a single key of the directory.
+  protected transient static final int DIRECTORY_SAMPLING = 1 << LOG_DIRECTORY_SAMPLING;
+
+  // Bitmask to extract lower bits.
+  protected transient static final long LOWER_BITS_MASK = (1L << 6) - 1;
+
+  // Code of the buckets storing an arithmetic progression, whose payload is kept as is.
+  protected transient static final long PROGRESSION =
+      EliasFanoAppendOnlyMonotoneLongSequence.PROGRESSION;
+
+  // Code of the buckets storing runs of equal integers, whose payload is kept as is.
+  protected transient static final long RUNS = EliasFanoAppendOnlyMonotoneLongSequence.RUNS;
+
+  // Size of a bucket.
+  protected final int B;
+
+  // Number of buckets.
+  protected final int buckets;
+
+  // Last integer of the sequence.
+  protected final long last;
+
+  // Upper and lower bits of all the buckets, one bucket after the other.
+  protected final long[] bits;
+
+  // Position of the first word of each bucket, plus the end of the last one.
+  protected final int[] offsets;
+
+  // For each bucket, its upper bound in the high bits and its number of lower bits in the low ones;
+  // null if the directory is compressed.
+  protected final long[] info;
+
+  // For each bucket, the number of ones of its upper bits preceding each block but the first one.
+  // Buckets with fewer blocks than the others are padded with their number of integers.
+  protected final int[] blockCounts;
+
+  // Number of block counts of a bucket.
+  protected final int blocksPerBucket;
+
+  // Read-optimized directory over the upper bound of the last bucket of every DIRECTORY_SAMPLING;
+  // null if the directory is compressed.
+  protected final EytzingerDirectory directory;
+
+  // Elias-Fano directory over the upper bounds and the numbers of lower bits of the buckets, if the
+  // directory is compressed.
+  protected final EliasFanoDirectory compressedDirectory;
+
+  /**
+   * Constructor that packs the content of the given sequence, which is left untouched.
+   * 
+   * @param s the sequence to be packed.
+   */
+  public EliasFanoCompactMonotoneLongSequence(final EliasFanoAppendOnlyMonotoneLongSequence s) {
+    this(s, false);
+  }
+
+  /**
+   * Constructor that packs the content of the given sequence, which is left untouched, choosing
+   * how the information of the buckets is stored.
+   * 
+   * @param s the sequence to be packed.
+   * @param compressDirectory whether the upper bounds and the numbers of lower bits of the buckets
+   *          are stored in an {@link EliasFanoDirectory}, rather than one word each.
+   */
+  public EliasFanoCompactMonotoneLongSequence(final EliasFanoAppendOnlyMonotoneLongSequence s,
+      final boolean compressDirectory) {
+    B = s.B;
+    length = s.length;
+    last = length == 0 ? -1L : s.last;
+    buckets = s.buckets + (s.N > 0 ? 1 : 0);
+
+    // Collects the words of every bucket, encoding the buffer as the last bucket.
+    final long[][] upperBits = new long[buckets][];
+    final long[][] lowerBits = new long[buckets][];
+    final long[] upperBitsLength = new long[buckets];
+    final long[] lowerBitsLength = new long[buckets];
+    final long[] info = new long[buckets];
+    long[] values = null;
+    for (int i = 0; i < s.buckets; i++) {
+      info[i] = s.info.array[i];
+      final long code = info[i] & LOWER_BITS_MASK;
+      if (code == PROGRESSION || code == RUNS) {
+        // The payload is kept as is, in place of the lower bits, with no upper bits.
+        upperBits[i] = new long[0];
+        lowerBits[i] = s.lowerBits.get(i);
+        lowerBitsLength[i] = (long) lowerBits[i].length * Long.SIZE;
+        continue;
+      }
+      if (code >= EliasFanoAppendOnlyMonotoneLongSequence.MIN_CODE) {
+        // Any other coded bucket is decoded and re-encoded as an Elias-Fano one.
+        if (values == null) {
+          values = new long[B];
+        }
+        s.decode(i, 0, values, 0, B);
+        final long prevUpper = info[i] >>> 6;
+        EliasFanoAppendOnlyMonotoneLongSequence.CompressedBucket bucket =
+            EliasFanoAppendOnlyMonotoneLongSequence.encodeEliasFano(values, 0, B, prevUpper,
+                new EliasFanoAppendOnlyMonotoneLongSequence.CompressedBucket());
+        info[i] = (prevUpper << 6) | bucket.l;
+        upperBits[i] = bucket.selector.bitVector().bits();
+        upperBitsLength[i] = bucket.selector.bitVector().length();
+        lowerBits[i] = bucket.lowerBits;
+        lowerBitsLength[i] = (long) B * bucket.l;
+        continue;
+      }
+      upperBits[i] = s.selectors.get(i).bitVector().bits();
+      upperBitsLength[i] = s.selectors.get(i).bitVector().length();
+      lowerBits[i] = s.lowerBits.get(i);
+      lowerBitsLength[i] = B * code;
+    }
+    if (buckets > s.buckets) {
+      final long prevUpper = s.info.array[s.buckets] >>> 6;
+      EliasFanoAppendOnlyMonotoneLongSequence.CompressedBucket bucket =
+          EliasFanoAppendOnlyMonotoneLongSequence.encodeEliasFano(s.buffer, 0, s.N, prevUpper,
+              new EliasFanoAppendOnlyMonotoneLongSequence.CompressedBucket());
+      info[s.buckets] = (prevUpper << 6) | bucket.l;
+      upperBits[s.buckets] = bucket.selector.bitVector().bits();
+      upperBitsLength[s.buckets] = bucket.selector.bitVector().length();
+      lowerBits[s.buckets] = bucket.lowerBits;
+      lowerBitsLength[s.buckets] = (long) s.N * bucket.l;
+    }
+
+    offsets = new int[buckets + 1];
+    long words = 0;
+    long blocks = 1;
+    for (int i = 0; i < buckets; i++) {
+      offsets[i] = (int) words;
+      words += upperBitsLength[i] + lowerBitsLength[i] + Long.SIZE - 1 >>> 6;
+      blocks = Math.max(blocks, upperBitsLength[i] + BLOCK_BITS - 1 >>> LOG_BLOCK_WORDS + 6);
+    }
+    blocksPerBucket = (int) blocks - 1;
+    if (words > Integer.MAX_VALUE || (long) buckets * blocksPerBucket > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The sequence is too large to be packed.");
+    }
+    offsets[buckets] = (int) words;
+
+    bits = new long[(int) words];
+    blockCounts = new int[buckets * blocksPerBucket];
+    for (int i = 0; i < buckets; i++) {
+      copy(upperBits[i], upperBitsLength[i], bits, (long) offsets[i] << 6);
+      copy(lowerBits[i], lowerBitsLength[i], bits, ((long) offsets[i + 1] << 6)
+          - lowerBitsLength[i]);
+      count(i, upperBits[i], upperBitsLength[i]);
+    }
+
+    final long[] upperBounds = new long[buckets];
+    for (int i = 0; i < buckets; i++) {
+      upperBounds[i] = i < buckets - 1 ? info[i + 1] >>> 6 : last;
+    }
+    final int groups = buckets + DIRECTORY_SAMPLING - 1 >>> LOG_DIRECTORY_SAMPLING;
+    final long[] samples = new long[groups];
+    for (int i = 0; i < groups; i++) {
+      samples[i] = upperBounds[Math.min(i + 1 << LOG_DIRECTORY_SAMPLING, buckets) - 1];
+    }
+    if (compressDirectory) {
+      final long[] codes = new long[buckets];
+      for (int i = 0; i < buckets; i++) {
+        codes[i] = info[i] & LOWER_BITS_MASK;
+      }
+      compressedDirectory = new EliasFanoDirectory(upperBounds, codes, buckets);
+      directory = null;
+      this.info = null;
+    } else {
+      compressedDirectory = null;
+      directory = new EytzingerDirectory(samples, groups);
+      this.info = info;
+    }
+  }
+
+  // Copies the first length bits of the source words into the destination ones, starting from the
+  // specified bit position.
+  private static void copy(final long[] source, final long length, final long[] dest,
+      final long position) {
+    final int words = (int) (length + Long.SIZE - 1 >>> 6);
+    final int start = (int) (position >>> 6);
+    final int bit = (int) (position & 63);
+    for (int i = 0; i < words; i++) {
+      long w = source[i];
+      if (i == words - 1 && (length & 63) != 0) {
+        w &= (1L << length) - 1;
+      }
+      dest[start + i] |= w << bit;
+      if (bit != 0 && w >>> -bit != 0) {
+        dest[start + i + 1] |= w >>> -bit;
+      }
+    }
+  }
+
+  // Records the number of ones of the upper bits of a bucket preceding each block but the first
+  // one, scanning them one word at a time.
+  private void count(final int bucket, final long[] upperBits, final long upperBitsLength) {
+    final int words = (int) (upperBitsLength + Long.SIZE - 1 >>> 6);
+    final int base = bucket * blocksPerBucket;
+    int block = 0;
+    int ones = 0;
+    for (int i = 0; i < words; i++) {
+      if (i != 0 && (i & (1 << LOG_BLOCK_WORDS) - 1) == 0) {
+        blockCounts[base + block++] = ones;
+      }
+      long w = upperBits[i];
+      if (i == words - 1 && (upperBitsLength & 63) != 0) {
+        w &= (1L << upperBitsLength) - 1;
+      }
+      ones += Long.bitCount(w);
+    }
+    while (block < blocksPerBucket) {
+      blockCounts[base + block++] = ones;
+    }
+  }
+
+  // Returns the number of words of a bucket.
+  private int words(final int bucket) {
+    return offsets[bucket + 1] - offsets[bucket];
+  }
+
+  // Returns the number of integers of a bucket.
+  private int size(final int bucket) {
+    return bucket < buckets - 1 ? B : length - bucket * B;
+  }
+
+  // Returns the upper bound of the previous bucket in the high bits and the number of lower bits in
+  // the low ones of a bucket.
+  private long info(final int bucket) {
+    if (info != null) {
+      return info[bucket];
+    }
+    final long prevUpper = bucket == 0 ? 0 : compressedDirectory.get(bucket - 1);
+    return prevUpper << 6 | compressedDirectory.code(bucket);
+  }
+
+  // Returns the position, relative to the bucket, of the one of the given rank: the block holding
+  // it is found by a binary search over the counts of the bucket, then its words are scanned.
+  private long select(final int bucket, final int rank) {
+    final long[] bits = this.bits;
+    final int[] blockCounts = this.blockCounts;
+    final int start = offsets[bucket];
+    final int base = bucket * blocksPerBucket - 1;
+    int lo = 0;
+    int hi = blocksPerBucket;
+    while (lo < hi) {
+      final int mid = (lo + hi + 1) >>> 1;
+      if (blockCounts[base + mid] <= rank) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    int r = lo == 0 ? rank : rank - blockCounts[base + lo];
+    int word = start + (lo << LOG_BLOCK_WORDS);
+    int count;
+    while ((count = Long.bitCount(bits[word])) <= r) {
+      r -= count;
+      word++;
+    }
+    return ((long) (word - start) << 6) + Fast.select(bits[word], r);
+  }
+
+  // Returns the position, relative to the bucket, of the zero of the given rank.
+  private long selectZero(final int bucket, final long rank) {
+    final long[] bits = this.bits;
+    final int[] blockCounts = this.blockCounts;
+    final int start = offsets[bucket];
+    final int base = bucket * blocksPerBucket - 1;
+    int lo = 0;
+    int hi = blocksPerBucket;
+    while (lo < hi) {
+      final int mid = (lo + hi + 1) >>> 1;
+      if ((long) mid * BLOCK_BITS - blockCounts[base + mid] <= rank) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    long r = lo == 0 ? rank : rank - ((long) lo * BLOCK_BITS - blockCounts[base + lo]);
+    int word = start + (lo << LOG_BLOCK_WORDS);
+    int count;
+    while ((count = Long.bitCount(~bits[word])) <= r) {
+      r -= count;
+      word++;
+    }
+    return ((long) (word - start) << 6) + Fast.select(~bits[word], (int) r);
+  }
+
+  // Returns the position of the first lower bit of a bucket.
+  private long lowerBitsStart(final int bucket, final long l) {
+    return ((long) offsets[bucket + 1] << 6) - size(bucket) * l;
+  }
+
+  // Extracts the l lower bits of the integer at the specified offset of a bucket.
+  private long lowerBits(final int bucket, final long l, final int offset) {
+    final long position = lowerBitsStart(bucket, l) + offset * l;
+    final int word = (int) (position >>> 6);
+    final int bit = (int) (position & 63);
+    long result = bits[word] >>> bit;
+    if (bit + l > Long.SIZE) {
+      result |= bits[word + 1] << -bit;
+    }
+    return result & (1L << l) - 1;
+  }
+
+  // Returns the integer at the specified offset of a bucket.
+  private long get(final int bucket, final int offset) {
+    final long lu = info(bucket);
+    final long l = lu & LOWER_BITS_MASK;
+    if (l == PROGRESSION) {
+      return EliasFanoAppendOnlyMonotoneLongSequence.getProgression(bits, offsets[bucket],
+          words(bucket), offset) + (lu >>> 6);
+    }
+    if (l == RUNS) {
+      return EliasFanoAppendOnlyMonotoneLongSequence.getRuns(bits, offsets[bucket],
+          words(bucket), offset) + (lu >>> 6);
+    }
+    final long high = select(bucket, offset) - offset;
+    return (l == 0 ? high : high << l | lowerBits(bucket, l, offset)) + (lu >>> 6);
+  }
+
+  @Override
+  public long getLong(final int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("" + index);
+    }
+    return get(index / B, index % B);
+  }
+
+  // Returns the upper bound of a bucket, that is its last integer.
+  private long upperBound(final int bucket) {
+    if (info == null) {
+      return compressedDirectory.get(bucket);
+    }
+    return bucket < buckets - 1 ? info[bucket + 1] >>> 6 : last;
+  }
+
+  // Returns the bucket containing the smallest integer greater than or equal to the given one,
+  // which must not be greater than the last integer. The directory locates the group of buckets,
+  // then a binary search over their upper bounds locates the bucket.
+  private int bucket(final long integer) {
+    if (directory == null) {
+      return compressedDirectory.lowerBound(integer);
+    }
+    int lo = directory.lowerBound(integer) << LOG_DIRECTORY_SAMPLING;
+    int hi = Math.min(lo + DIRECTORY_SAMPLING, buckets) - 1;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (upperBound(mid) < integer) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  // Returns the offset of the smallest integer of a bucket that is greater than or equal to the
+  // given one, which must not be greater than the upper bound of the bucket.
+  private int nextGEQOffset(final int bucket, final long integer) {
+    final long lu = info(bucket);
+    final long prevUpper = lu >>> 6;
+    if (integer <= prevUpper) {
+      return 0;
+    }
+
+    final long l = lu & LOWER_BITS_MASK;
+    final long v = integer - prevUpper;
+    if (l == PROGRESSION) {
+      return EliasFanoAppendOnlyMonotoneLongSequence.nextGEQOffsetProgression(bits,
+          offsets[bucket], words(bucket), size(bucket), v);
+    }
+    if (l == RUNS) {
+      return EliasFanoAppendOnlyMonotoneLongSequence.nextGEQOffsetRuns(bits, offsets[bucket],
+          words(bucket), v);
+    }
+    final long high = v >>> l;
+    long position = high == 0 ? 0 : selectZero(bucket, high - 1) + 1;
+    int offset = (int) (position - high);
+    if (l == 0) {
+      return offset;
+    }
+
+    final long[] bits = this.bits;
+    final int start = offsets[bucket];
+    final long low = v & (1L << l) - 1;
+    final int size = size(bucket);
+    while (offset < size && (bits[start + (int) (position >>> 6)] & 1L << position) != 0) {
+      if (lowerBits(bucket, l, offset) >= low) {
+        return offset;
+      }
+      offset++;
+      position++;
+    }
+    return offset;
+  }
+
+  @Override
+  public long nextGEQLong(final long integer) {
+    if (length == 0 || integer > last) {
+      return -1L;
+    }
+    final int bucket = bucket(integer);
+    return get(bucket, nextGEQOffset(bucket, integer));
+  }
+
+  @Override
+  public int rank(final long integer) {
+    if (length == 0 || integer > last) {
+      return length;
+    }
+    final int bucket = bucket(integer);
+    return bucket * B + nextGEQOffset(bucket, integer);
+  }
+
+  @Override
+  public void decode(final int from, final long[] dest, final int destOffset, final int count) {
+    checkDecodeBounds(from, dest, destOffset, count);
+    int bucket = from / B;
+    int offset = from % B;
+    int pos = destOffset;
+    int left = count;
+    while (left > 0) {
+      final int n = Math.min(left, B - offset);
+      decode(bucket, offset, dest, pos, n);
+      pos += n;
+      left -= n;
+      offset = 0;
+      bucket++;
+    }
+  }
+
+  // Decodes count integers of a bucket, starting from the specified offset: the upper bits are
+  // scanned one word at a time, then the lower bits are merged in a separate loop.
+  private void decode(final int bucket, final int offset, final long[] dest, final int destOffset,
+      final int count) {
+    final long[] bits = this.bits;
+    final long lu = info(bucket);
+    final long l = lu & LOWER_BITS_MASK;
+    final long u = lu >>> 6;
+    final int start = offsets[bucket];
+    final int end = destOffset + count;
+    if (l == PROGRESSION || l == RUNS) {
+      if (l == PROGRESSION) {
+        EliasFanoAppendOnlyMonotoneLongSequence.decodeProgression(bits, start, words(bucket),
+            offset, dest, destOffset, count);
+      } else {
+        EliasFanoAppendOnlyMonotoneLongSequence.decodeRuns(bits, start, words(bucket), offset,
+            dest, destOffset, count);
+      }
+      for (int i = destOffset; i < end; i++) {
+        dest[i] += u;
+      }
+      return;
+    }
+    final long first = select(bucket, offset);
+
+    int word = start + (int) (first >>> 6);
+    long w = bits[word] & -1L << first;
+    long high = (long) (word - start) * Long.SIZE - offset;
+    for (int i = destOffset; i < end; i++) {
+      while (w == 0) {
+        w = bits[++word];
+        high += Long.SIZE;
+      }
+      dest[i] = high + Long.numberOfTrailingZeros(w);
+      w &= w - 1;
+      high--;
+    }
+
+    if (l == 0) {
+      for (int i = destOffset; i < end; i++) {
+        dest[i] += u;
+      }
+      return;
+    }
+
+    final long lowerBitsMask = (1L << l) - 1;
+    long lowerBitsPosition = lowerBitsStart(bucket, l) + offset * l;
+    for (int i = destOffset; i < end; i++) {
+      final int startWord = (int) (lowerBitsPosition >>> 6);
+      final int startBit = (int) (lowerBitsPosition & 63);
+      long result = bits[startWord] >>> startBit;
+      if (startBit + l > Long.SIZE) {
+        result |= bits[startWord + 1] << -startBit;
+      }
+      dest[i] = (dest[i] << l | result & lowerBitsMask) + u;
+      lowerBitsPosition += l;
+    }
+  }
+
+  // Splits on the bucket boundary closest to the middle of the range.
+  @Override
+  protected int splitPoint(final int from, final int to) {
+    final int mid = (from + to) >>> 1;
+    final int aligned = mid - mid % B;
+    return (aligned > from && mid - aligned <= B >>> 1) || aligned + B >= to ? aligned
+        : aligned + B;
+  }
+
+  @Override
+  public LongIterator iterator() {
+    return new EliasFanoCompactMonotoneLongSequenceIterator(0, length - 1);
+  }
+
+  @Override
+  public LongIterator iterator(final int from, final int to) {
+    checkIndices(from, to);
+    return new EliasFanoCompactMonotoneLongSequenceIterator(from, to);
+  }
+
+  private class EliasFanoCompactMonotoneLongSequenceIterator extends AbstractLongIterator {
+    // Number of integers decoded at once.
+    static final int BLOCK_SIZE = 64;
+
+    final long[] block = new long[BLOCK_SIZE];
+    int next;
+    final int to;
+    int blockNext = 0;
+    int blockEnd = 0;
+
+    EliasFanoCompactMonotoneLongSequenceIterator(final int from, final int to) {
+      next = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return blockNext < blockEnd || next <= to;
+    }
+
+    @Override
+    public long nextLong() {
+      if (blockNext == blockEnd) {
+        if (next > to) {
+          throw new NoSuchElementException();
+        }
+        blockEnd = Math.min(BLOCK_SIZE, to - next + 1);
+        decode(next, block, 0, blockEnd);
+        next += blockEnd;
+        blockNext = 0;
+      }
+      return block[blockNext++];
+    }
+  }
+
+  /**
+   * Unsupported operation since the sequence is frozen.
+   */
+  @Override
+  public boolean addLong(final long integer) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Unsupported operation since the sequence is frozen.
+   */
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public List<Long> subList(final int from, final int to) {
+    checkIndices(from, to);
+    final long[] integers = new long[to - from + 1];
+    decode(from, integers, 0, integers.length);
+    return new EliasFanoCompactMonotoneLongSequence(
+        EliasFanoAppendOnlyMonotoneLongSequence.build(integers), info == null);
+  }
+
+  @Override
+  public int bits() {
+    return bits.length * Long.SIZE + (offsets.length + blockCounts.length) * Integer.SIZE
+        + (info != null ? info.length * Long.SIZE + directory.bits() : compressedDirectory.bits());
+  }
+
+  /**
+   * The sequence is already stored in arrays of the exact size.
+   */
+  @Override
+  public void trimToSize() {}
+}
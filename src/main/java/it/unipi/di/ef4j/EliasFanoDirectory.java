@@ -0,0 +1,194 @@
+/*
+ * 
+ * Copyright (C) 2014 Giulio Ermanno Pibiri
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.unipi.di;
+
+import java.io.Serializable;
+
+import it.unimi.dsi.bits.BitVector;
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.sux4j.bits.Select;
+import it.unimi.dsi.sux4j.bits.SelectZero;
+
+/**
+ * The <tt>EliasFanoDirectory</tt> class represents a read-only directory over a sorted array of
+ * non-negative integers, such as the upper bounds of the buckets of a sequence, compressed with the
+ * <em>Elias-Fano integer encoding</em>. Along with each key, the directory stores a 6-bit code,
+ * such as the number of lower bits of the bucket, in a packed array. Searching for a key is a
+ * <em>next greater or equal</em> query on the Elias-Fano representation, hence the directory takes
+ * a few bits per key in place of a whole word, at the price of slower lookups.
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public final class EliasFanoDirectory implements Serializable {
+  // Serial ID number.
+  private transient static final long serialVersionUID = 13071990L;
+
+  // Number of bits of a code.
+  protected transient static final int CODE_BITS = 6;
+
+  // Number of keys.
+  protected final int size;
+
+  // Largest key.
+  protected final long last;
+
+  // Number of lower bits of the keys.
+  protected final long l;
+
+  // Lower bits of the keys.
+  protected final long[] lowerBits;
+
+  // Selector over the upper bits of the keys.
+  protected final Select selector;
+
+  // Zero-selector over the upper bits of the keys.
+  protected final SelectZero zeroSelector;
+
+  // Codes of the keys, CODE_BITS bits each.
+  protected final long[] codes;
+
+  /**
+   * Constructor.
+   * 
+   * @param sorted the array containing the non-decreasing, non-negative keys.
+   * @param codes the array containing the code of each key, which must fit 6 bits.
+   * @param size the number of keys, taken from the beginning of the arrays.
+   */
+  public EliasFanoDirectory(final long[] sorted, final long[] codes, final int size) {
+    this.size = size;
+    last = size == 0 ? -1L : sorted[size - 1];
+    final long u = Math.max(0, last);
+    l = size == 0 ? 0 : Math.max(0, Fast.mostSignificantBit(u / size));
+    final long upperBitsLength = size + (u >>> l) + 1;
+    final long[] upperBits = new long[(int) (upperBitsLength + Long.SIZE - 1 >>> 6)];
+    lowerBits = new long[(int) (size * l + Long.SIZE - 1 >>> 6)];
+    this.codes = new long[(int) ((long) size * CODE_BITS + Long.SIZE - 1 >>> 6)];
+
+    final long lowerBitsMask = (1L << l) - 1;
+    for (int i = 0; i < size; i++) {
+      final long v = sorted[i];
+      if (l != 0) {
+        write(lowerBits, i * l, v & lowerBitsMask, l);
+      }
+      final long position = (v >>> l) + i;
+      upperBits[(int) (position >>> 6)] |= 1L << position;
+      write(this.codes, (long) i * CODE_BITS, codes[i], CODE_BITS);
+    }
+
+    final BitVector upperBitsVector = LongArrayBitVector.wrap(upperBits, upperBitsLength);
+    selector = EliasFanoAppendOnlyMonotoneLongSequence.selector(upperBitsVector);
+    zeroSelector = EliasFanoAppendOnlyMonotoneLongSequence.zeroSelector(upperBitsVector, selector);
+  }
+
+  // Writes the width low bits of the value at the specified bit position of the array.
+  private static void write(final long[] array, final long position, final long value,
+      final long width) {
+    final int word = (int) (position >>> 6);
+    final int bit = (int) (position & 63);
+    array[word] |= value << bit;
+    if (bit + width > Long.SIZE) {
+      array[word + 1] |= value >>> -bit;
+    }
+  }
+
+  // Reads width bits at the specified bit position of the array.
+  private static long read(final long[] array, final long position, final long width) {
+    final int word = (int) (position >>> 6);
+    final int bit = (int) (position & 63);
+    long result = array[word] >>> bit;
+    if (bit + width > Long.SIZE) {
+      result |= array[word + 1] << -bit;
+    }
+    return result & (1L << width) - 1;
+  }
+
+  /**
+   * Returns the key at the specified position.
+   * 
+   * @param index the position of the key.
+   * @return the key at position <tt>index</tt>.
+   */
+  public long get(final int index) {
+    final long high = selector.select(index) - index;
+    return l == 0 ? high : high << l | read(lowerBits, index * l, l);
+  }
+
+  /**
+   * Returns the code of the key at the specified position.
+   * 
+   * @param index the position of the key.
+   * @return the code of the key at position <tt>index</tt>.
+   */
+  public long code(final int index) {
+    return read(codes, (long) index * CODE_BITS, CODE_BITS);
+  }
+
+  /**
+   * Returns the position of the first key that is greater than or equal to the given integer.
+   * 
+   * @param integer the integer to be searched for.
+   * @return the position of the first key greater than or equal to <tt>integer</tt>; the number of
+   *         keys if there is no such key.
+   */
+  public int lowerBound(final long integer) {
+    if (integer > last) {
+      return size;
+    }
+    if (integer <= 0) {
+      return 0;
+    }
+
+    final long high = integer >>> l;
+    long position = high == 0 ? 0 : zeroSelector.selectZero(high - 1) + 1;
+    int index = (int) (position - high);
+    if (l == 0) {
+      return index;
+    }
+
+    final long[] upperBits = selector.bitVector().bits();
+    final long low = integer & (1L << l) - 1;
+    while ((upperBits[(int) (position >>> 6)] & 1L << position) != 0) {
+      if (read(lowerBits, index * l, l) >= low) {
+        return index;
+      }
+      index++;
+      position++;
+    }
+    return index;
+  }
+
+  /**
+   * Returns the number of keys.
+   * 
+   * @return the number of keys.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of bits used by the directory.
+   * 
+   * @return the number of bits used by the directory.
+   */
+  public int bits() {
+    return (int) (selector.bitVector().length() + selector.numBits()
+        + (zeroSelector != selector ? zeroSelector.numBits() : 0)
+        + (lowerBits.length + codes.length) * Long.SIZE);
+  }
+}
@@ -16,19 +16,11 @@
 
 package it.unipi.di;
 
-import it.unimi.dsi.bits.BitVector;
 import it.unimi.dsi.bits.Fast;
-import it.unimi.dsi.bits.LongArrayBitVector;
-import it.unimi.dsi.fastutil.longs.LongBigList;
-import it.unimi.dsi.sux4j.bits.SimpleSelect;
-
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
+import it.unimi.dsi.fastutil.longs.AbstractLongIterator;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
 import java.io.Serializable;
-import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.ArrayList;
@@ -62,6 +54,13 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
   // Flag to mean the dynamic-mode is ON/OFF.
   protected boolean dynamic;
 
+  // Flag to mean the search structure of s was dropped by a split or merge of buckets and has to be
+  // rebuilt by the next query.
+  protected transient boolean staleSearch;
+
+  // Maximum error of the model built by optimizeSearch, or -1 if a directory was built instead.
+  protected transient int searchEpsilon;
+
   /**
    * Constructor for unknown initial capacity.
    * 
@@ -96,9 +95,61 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
     }
   }
 
+  /**
+   * Builds a read-optimized directory over the upper bounds of the buckets, used to locate buckets
+   * by queries and to route insertions and deletions. When a bucket is split or merged the
+   * directory is dropped, and it is rebuilt by the next <em>next greater or equal</em> query, so
+   * that a burst of updates pays for a single reconstruction.
+   * 
+   * @see EliasFanoAppendOnlyMonotoneLongSequence#optimizeSearch()
+   */
+  public void optimizeSearch() {
+    s.optimizeSearch();
+    searchEpsilon = -1;
+    staleSearch = false;
+  }
+
+  /**
+   * Builds a piecewise-linear model of the upper bounds of the buckets, used to locate buckets by
+   * queries and to route insertions and deletions. When a bucket is split or merged the model is
+   * dropped, and it is rebuilt with the same <tt>epsilon</tt> by the next <em>next greater or
+   * equal</em> query.
+   * 
+   * @param epsilon the maximum error of the prediction, in buckets.
+   * @throws IllegalArgumentException if <tt>epsilon</tt> is negative.
+   * @see EliasFanoAppendOnlyMonotoneLongSequence#optimizeSearch(int)
+   */
+  public void optimizeSearch(final int epsilon) {
+    s.optimizeSearch(epsilon);
+    searchEpsilon = epsilon;
+    staleSearch = false;
+  }
+
+  // Drops the search structure of s, if any, since the upper bounds of the buckets are shifted.
+  private void dropSearch() {
+    if (s.directory != null || s.model != null) {
+      s.directory = null;
+      s.model = null;
+      staleSearch = true;
+    }
+  }
+
+  // Rebuilds the search structure of s dropped by a split or merge of buckets, if any.
+  private void rebuildSearch() {
+    if (staleSearch) {
+      staleSearch = false;
+      if (searchEpsilon < 0) {
+        s.optimizeSearch();
+      } else {
+        s.optimizeSearch(searchEpsilon);
+      }
+    }
+  }
+
   @Override
   public void clear() {
     s.clear();
+    staleSearch = false;
     if (dynamic) {
       di = null;
       dynamic = false;
@@ -129,11 +180,11 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
   }
 
   @Override
-  public boolean add(final Long integer) {
+  public boolean addLong(final long integer) {
     if (dynamic) {
       di.add(integer);
     } else {
-      s.add(integer);
+      s.addLong(integer);
     }
     length++;
     return true;
@@ -150,24 +201,22 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
   }
 
   @Override
-  public Long get(final int index) {
+  public long getLong(final int index) {
     if (dynamic) {
       return di.get(index);
     }
-    return s.get(index);
+    return s.getLong(index);
   }
 
   @Override
-  public Long nextGEQ(final long integer) {
-    int bucket = integer > 0 ? s.binarySearchOverInfo(integer) : 0;
-    Iterator<Long> it;
-    if (dynamic) {
-      it = iterator(bucket);
-    } else {
-      it = s.iterator(bucket);
+  public long nextGEQLong(final long integer) {
+    if (!dynamic) {
+      return s.nextGEQLong(integer);
     }
+    rebuildSearch();
+    LongIterator it = iterator(integer > 0 ? s.binarySearchOverInfo(integer) : 0);
     while (it.hasNext()) {
-      long v = it.next();
+      final long v = it.nextLong();
       if (v >= integer) {
         return v;
       }
@@ -176,19 +225,51 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
   }
 
   @Override
-  public Iterator<Long> iterator() {
+  public int rank(final long integer) {
+    if (!dynamic) {
+      return s.rank(integer);
+    }
+    return super.rank(integer);
+  }
+
+  @Override
+  public MonotoneLongSequenceCursor cursor() {
+    if (!dynamic) {
+      return s.cursor();
+    }
+    return super.cursor();
+  }
+
+  @Override
+  protected int splitPoint(final int from, final int to) {
+    if (!dynamic) {
+      return s.splitPoint(from, to);
+    }
+    return super.splitPoint(from, to);
+  }
+
+  @Override
+  public long prevLEQ(final long integer) {
+    if (!dynamic) {
+      return s.prevLEQ(integer);
+    }
+    return super.prevLEQ(integer);
+  }
+
+  @Override
+  public LongIterator iterator() {
     if (dynamic) {
       return new EliasFanoDynamicMonotoneLongSequenceIterator<Long>();
     }
     return s.iterator();
   }
 
-  protected Iterator<Long> iterator(final int bucket) {
+  protected LongIterator iterator(final int bucket) {
     return new EliasFanoDynamicMonotoneLongSequenceIterator<Long>(bucket);
   }
 
   @Override
-  public Iterator<Long> iterator(final int from, final int to) {
+  public LongIterator iterator(final int from, final int to) {
     if (dynamic) {
       checkIndices(from, to);
       return new EliasFanoDynamicMonotoneLongSequenceIterator<Long>(from, to);
@@ -203,9 +284,9 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
     final int B = (int) Math.sqrt(to - from + 1 << 3);
     EliasFanoDynamicMonotoneLongSequence subList = new EliasFanoDynamicMonotoneLongSequence(B);
 
-    Iterator<Long> it = this.iterator(from, to);
+    LongIterator it = this.iterator(from, to);
     while (it.hasNext()) {
-      subList.add(it.next());
+      subList.addLong(it.nextLong());
     }
     return subList;
   }
@@ -239,7 +320,7 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
     this.di = di.clone();
   }
 
-  private class EliasFanoDynamicMonotoneLongSequenceIterator<T> implements Iterator<Long> {
+  private class EliasFanoDynamicMonotoneLongSequenceIterator<T> extends AbstractLongIterator {
     int N = length;
     long a;
     long b;
@@ -247,9 +328,9 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
     long tmp;
     int next = 0;
     int bucket;
-    Iterator<Long> itOverAdds;
-    Iterator<Long> itOverDels;
-    Iterator<Long> itOverBucket;
+    LongIterator itOverAdds;
+    LongIterator itOverDels;
+    LongIterator itOverBucket;
     final long LONG_MAX_VALUE = Long.MAX_VALUE;
 
     EliasFanoDynamicMonotoneLongSequenceIterator() {
@@ -276,25 +357,10 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
 
     EliasFanoDynamicMonotoneLongSequenceIterator(final int from, final int to) {
       bucket = di.binarySearchOverSizes(from);
+      next = bucket > 0 ? di.sizes.array[bucket - 1] : 0;
       init(bucket);
-      while (next < from) {
-        if (a < b && a < c) {
-          next++;
-          a = next(itOverBucket);
-        } else if (b <= a && b < c) {
-          next++;
-          b = next(itOverAdds);
-        } else if (b == c) {
-          b = next(itOverAdds);
-          c = next(itOverDels);
-        } else {
-          if (c == a) {
-            a = next(itOverBucket);
-            c = next(itOverDels);
-          } else {
-            c = next(itOverDels);
-          }
-        }
+      while (next < from) { // skips integers, moving to the next buckets if needed
+        nextLong();
       }
       N = to + 1;
     }
@@ -305,7 +371,7 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
     }
 
     @Override
-    public Long next() {
+    public long nextLong() {
       while (hasNext()) {
         while (a != LONG_MAX_VALUE || b != LONG_MAX_VALUE || c != LONG_MAX_VALUE) {
           if (a < b && a < c) {
@@ -336,22 +402,11 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
       throw new NoSuchElementException("Element not present.");
     }
 
-    private long next(Iterator<Long> it) {
-      return it.hasNext() ? it.next() : LONG_MAX_VALUE;
-    }
-
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException();
+    private long next(LongIterator it) {
+      return it.hasNext() ? it.nextLong() : LONG_MAX_VALUE;
     }
   }
 
-  // Record inner class useful during compression of a block.
-  static private class CompressedBlock {
-    LongArrayBitVector lowerBitsVector;
-    BitVector upperBits;
-  }
-
   // Record class that represents a bucket index.
   static private class Index {
     LongDynamicArray additions;
@@ -365,7 +420,7 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
     IntegerPrefixSumDynamicArray sizes;
     final int halfB;
     final int doubleB;
-    CompressedBlock cb;
+    EliasFanoAppendOnlyMonotoneLongSequence.CompressedBucket cb;
     
     DynamicIndex() {
       final int buckets = s.buckets;
@@ -387,7 +442,7 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
         indices.add(newIndex());
       }
       sizes = new IntegerPrefixSumDynamicArray(s.B, buckets);
-      cb = new CompressedBlock();
+      cb = new EliasFanoAppendOnlyMonotoneLongSequence.CompressedBucket();
     }
 
     long get(final int index) {
@@ -473,12 +528,9 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
         }
       }
             
-      Iterator<Long> it = iterator(bucket);
-      int c = 0;
-      while (c++ < i) {
-        it.next();
-      }
-      return it.next();
+      LongIterator it = iterator(bucket);
+      it.skip(i);
+      return it.nextLong();
     }
     
     private boolean checkIfGreater(final long p, LongDynamicArray additions, LongDynamicArray deletions, final int j, final int k) {
@@ -556,12 +608,14 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
           long[] f = fusion(bucket, newB);
 
           if (newB >= doubleB) { // split in two blocks
+            dropSearch();
             s.info.insertLong(bucket + 1);
             s.info.array[bucket + 1] = f[B - 1] << 6;
             reconstruction(f, B, bucket);
             compress(f, B, newB - 1, bucket + 1);
-            s.lowerBits.add(bucket + 1, cb.lowerBitsVector.bits());
-            s.selectors.add(bucket + 1, new SimpleSelect(cb.upperBits));
+            s.lowerBits.add(bucket + 1, cb.lowerBits);
+            s.selectors.add(bucket + 1, cb.selector);
+            s.zeroSelectors.add(bucket + 1, cb.zeroSelector);
             sizes.addInt(bucket + 1, newB - B);
             indices.add(bucket + 1, newIndex());
           } else {
@@ -627,8 +681,9 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
 
     void reconstruction(long[] f, final int to, final int bucket) {
       compress(f, 0, to - 1, bucket);
-      s.lowerBits.set(bucket, cb.lowerBitsVector.bits());
-      s.selectors.set(bucket, new SimpleSelect(cb.upperBits));
+      s.lowerBits.set(bucket, cb.lowerBits);
+      s.selectors.set(bucket, cb.selector);
+      s.zeroSelectors.set(bucket, cb.zeroSelector);
       sizes.setInt(bucket, to);
     }
 
@@ -637,34 +692,10 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
     }
 
     void compress(final long[] array, final int from, final int to, final int bucket) {
-      final int B = to - from + 1;
       final long lu = s.info.array[bucket];
       final long prevUpper = (lu & EliasFanoAppendOnlyMonotoneLongSequence.UPPER_BITS_MASK) >> 6;
-      final long u = array[to] - prevUpper;
-      final long l = Math.max(0, Fast.mostSignificantBit(u / B));
-      final long lowerBitsMask = (1L << l) - 1;
-
-      LongArrayBitVector lowerBitsVector = LongArrayBitVector.getInstance();
-      LongBigList lowerBitsList = lowerBitsVector.asLongBigList((int) l);
-      lowerBitsList.size(B);
-      BitVector upperBits = LongArrayBitVector.getInstance().length(B + (u >>> l) + 1);
-
-      if (l != 0) {
-        long v;
-        for (int i = from; i <= to; i++) {
-          v = array[i] - prevUpper;
-          lowerBitsList.set(i - from, v & lowerBitsMask);
-          upperBits.set((v >>> l) + i - from);
-        }
-      } else {
-        for (int i = from; i <= to; i++) {
-          upperBits.set(array[i] - prevUpper + i - from);
-        }
-      }
-
-      s.info.array[bucket] = (prevUpper << 6) | l;
-      cb.lowerBitsVector = lowerBitsVector;
-      cb.upperBits = upperBits;
+      EliasFanoAppendOnlyMonotoneLongSequence.encode(array, from, to - from + 1, prevUpper, cb);
+      s.info.array[bucket] = (prevUpper << 6) | cb.l;
     }
 
     boolean isBufferFull() {
@@ -686,10 +717,10 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
 
     long[] fusion(final int bucket, final int length) {
       long[] temp = new long[length];
-      Iterator<Long> it = iterator(bucket);
+      LongIterator it = iterator(bucket);
       int i = 0;
       while (i < length) {
-        temp[i++] = it.next();
+        temp[i++] = it.nextLong();
       }
       return temp;
     }
@@ -734,9 +765,11 @@ public final class EliasFanoDynamicMonotoneLongSequence extends AbstractMonotone
       if (bucket + 1 != s.buckets) {
         s.lowerBits.remove(bucket + 1);
         s.selectors.remove(bucket + 1);
+        s.zeroSelectors.remove(bucket + 1);
         indices.remove(bucket + 1);
         sizes.removeInt(bucket + 1);
         s.info.removeLong(bucket + 1);
+        dropSearch();
       } else {
         s.N = 0;
         emptyIndex(indices.get(s.buckets));
@@ -0,0 +1,417 @@
+/*
+ * 
+ * Copyright (C) 2014 Giulio Ermanno Pibiri
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.unipi.di;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.fastutil.longs.AbstractLongIterator;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.sux4j.bits.Select;
+import it.unimi.dsi.sux4j.bits.SelectZero;
+
+/**
+ * The <tt>EliasFanoPartitionedMonotoneLongSequence</tt> class represents a <em>frozen</em>
+ * monotone sequence of non-decreasing integers compressed with the <em>partitioned Elias-Fano
+ * integer encoding</em>. Rather than splitting the sequence into buckets of a fixed size, it is
+ * built from the whole sorted input, which is split into partitions of variable length chosen so as
+ * to minimize the total number of bits: dense runs of integers end up in long partitions with few
+ * lower bits, while sparse ones are isolated in partitions of their own. The partitions are
+ * computed with the <em>(1 + epsilon)</em>-approximation algorithm by Ottaviano and Venturini,
+ * which finds a shortest path over a pruned graph of candidate partitions in linear time. Each
+ * partition is then encoded exactly as a bucket of an
+ * {@link EliasFanoAppendOnlyMonotoneLongSequence} and decoded by the same routines.
+ * 
+ * <p>
+ * It supports the <em>get</em> and <em>next greater or equal</em> operations, along with methods
+ * for inspecting how many bits the sequence is using, testing if the sequence is empty, and
+ * iterating through the items in order. The sequence cannot be modified.
+ * </p>
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public final class EliasFanoPartitionedMonotoneLongSequence extends
+    AbstractAppendOnlyMonotoneLongSequence implements Serializable {
+  // Serial ID number.
+  private transient static final long serialVersionUID = 13071990L;
+
+  // Bitmask to extract lower bits.
+  protected transient static final long LOWER_BITS_MASK = (1L << 6) - 1;
+
+  // Estimated number of bits spent by a partition besides its upper and lower bits: its info word,
+  // its endpoint and its share of the directory and of the select samples.
+  protected transient static final long PARTITION_COST = 256;
+
+  // Approximation of the lightest partition cost that bounds the candidate partitions.
+  protected transient static final double EPSILON1 = 0.03;
+
+  // Approximation of the costs of the candidate partitions.
+  protected transient static final double EPSILON2 = 0.3;
+
+  // Number of partitions.
+  protected final int partitions;
+
+  // Last integer of the sequence.
+  protected final long last;
+
+  // Position of the first integer of each partition, plus the length of the sequence.
+  protected final int[] endpoints;
+
+  // For each partition, the upper bound of the previous one in the high bits and its number of
+  // lower bits in the low ones; the last entry holds the last integer of the sequence.
+  protected final long[] info;
+
+  // Lower bits of each partition.
+  protected final long[][] lowerBits;
+
+  // Selectors over the upper bits of each partition.
+  protected final Select[] selectors;
+
+  // Zero-selectors over the upper bits of each partition.
+  protected final SelectZero[] zeroSelectors;
+
+  // Read-optimized directory over the upper bounds of the partitions.
+  protected final EytzingerDirectory directory;
+
+  // Constructor encoding the partitions of a range of sorted integers ending at the given
+  // positions.
+  private EliasFanoPartitionedMonotoneLongSequence(final long[] integers, final int offset,
+      final int length, final int[] ends) {
+    this.length = length;
+    last = length == 0 ? -1L : integers[offset + length - 1];
+    partitions = ends.length;
+    endpoints = new int[partitions + 1];
+    info = new long[partitions + 1];
+    lowerBits = new long[partitions][];
+    selectors = new Select[partitions];
+    zeroSelectors = new SelectZero[partitions];
+
+    final EliasFanoAppendOnlyMonotoneLongSequence.CompressedBucket bucket =
+        new EliasFanoAppendOnlyMonotoneLongSequence.CompressedBucket();
+    final long[] upperBounds = new long[partitions];
+    int start = 0;
+    for (int i = 0; i < partitions; i++) {
+      final long prevUpper = start == 0 ? 0 : integers[offset + start - 1];
+      EliasFanoAppendOnlyMonotoneLongSequence.encode(integers, offset + start, ends[i] - start,
+          prevUpper, bucket);
+      endpoints[i] = start;
+      info[i] = (prevUpper << 6) | bucket.l;
+      lowerBits[i] = bucket.lowerBits;
+      selectors[i] = bucket.selector;
+      zeroSelectors[i] = bucket.zeroSelector;
+      upperBounds[i] = integers[offset + ends[i] - 1];
+      start = ends[i];
+    }
+    endpoints[partitions] = length;
+    info[partitions] = length == 0 ? 0 : last << 6;
+    directory = new EytzingerDirectory(upperBounds, partitions);
+  }
+
+  /**
+   * Builds a sequence from the given sorted integers, splitting them into the partitions that
+   * approximately minimize its number of bits.
+   * 
+   * @param integers the non-decreasing integers.
+   * @return a sequence containing the given integers.
+   * @throws IllegalArgumentException if the integers are not monotone.
+   */
+  public static EliasFanoPartitionedMonotoneLongSequence build(final long[] integers) {
+    return build(integers, 0, integers.length);
+  }
+
+  /**
+   * Builds a sequence from a range of the given sorted integers, splitting them into the partitions
+   * that approximately minimize its number of bits.
+   * 
+   * @param integers the array containing the non-decreasing integers.
+   * @param offset the position of the first integer.
+   * @param length the number of integers.
+   * @return a sequence containing the given integers.
+   * @throws IllegalArgumentException if the integers are not monotone.
+   * @throws IndexOutOfBoundsException if bounds are incorrect.
+   */
+  public static EliasFanoPartitionedMonotoneLongSequence build(final long[] integers,
+      final int offset, final int length) {
+    if (offset < 0 || length < 0 || offset > integers.length - length) {
+      throw new IndexOutOfBoundsException(offset + " + " + length);
+    }
+    final int end = offset + length;
+    for (int i = offset + 1; i < end; i++) {
+      if (integers[i - 1] > integers[i]) {
+        throw new IllegalArgumentException("The list of values is not monotone: "
+            + integers[i - 1] + " > " + integers[i] + ".");
+      }
+    }
+    return new EliasFanoPartitionedMonotoneLongSequence(integers, offset, length, partition(
+        integers, offset, length));
+  }
+
+  // Returns the number of bits taken by a partition of n integers whose range, from the upper bound
+  // of the previous partition to its last integer, is u: the same formula used by the encoder.
+  protected static long cost(final long u, final int n) {
+    final long l = Math.max(0, Fast.mostSignificantBit(u / n));
+    return PARTITION_COST + n * l + n + (u >>> l) + 1;
+  }
+
+  // Returns the end positions, relative to the offset, of the partitions of a range of sorted
+  // integers that approximately minimize the total cost. Positions are the nodes of a graph where
+  // each arc is a candidate partition, weighted by its cost, and the shortest path from the first
+  // to the last node is computed in a single pass. Only the longest arcs whose cost does not exceed
+  // each of a geometric sequence of bounds are considered: for each bound, a window sliding over
+  // the integers keeps track of the end of such arc as the start moves forward.
+  private static int[] partition(final long[] integers, final int offset, final int length) {
+    if (length == 0) {
+      return new int[0];
+    }
+
+    final long singlePartitionCost = cost(integers[offset + length - 1], length);
+    final long[] minCost = new long[length + 1];
+    final int[] path = new int[length + 1];
+    Arrays.fill(minCost, 1, length + 1, singlePartitionCost);
+
+    // Bounds of the windows: the cost of a single integer up to that of the whole range.
+    final long lowerBound = PARTITION_COST;
+    final double[] bounds = new double[64];
+    int windows = 0;
+    double bound = lowerBound;
+    while (bound < lowerBound / EPSILON1 && windows < bounds.length) {
+      bounds[windows++] = bound;
+      if (bound >= singlePartitionCost) {
+        break;
+      }
+      bound *= 1 + EPSILON2;
+    }
+
+    final int[] windowEnds = new int[windows];
+    for (int i = 0; i < length; i++) {
+      final long prevUpper = i == 0 ? 0 : integers[offset + i - 1];
+      final long cost = minCost[i];
+      int lastEnd = i + 1;
+      for (int w = 0; w < windows; w++) {
+        int end = Math.max(windowEnds[w], lastEnd);
+        while (true) {
+          final long windowCost = cost(integers[offset + end - 1] - prevUpper, end - i);
+          if (cost + windowCost < minCost[end]) {
+            minCost[end] = cost + windowCost;
+            path[end] = i;
+          }
+          lastEnd = end;
+          if (end == length || windowCost >= bounds[w]) {
+            break;
+          }
+          end++;
+        }
+        windowEnds[w] = end;
+      }
+    }
+
+    int partitions = 0;
+    for (int end = length; end != 0; end = path[end]) {
+      partitions++;
+    }
+    final int[] ends = new int[partitions];
+    for (int end = length; end != 0; end = path[end]) {
+      ends[--partitions] = end;
+    }
+    return ends;
+  }
+
+  // Returns the partition containing the integer at the specified position.
+  private int partition(final int index) {
+    final int[] endpoints = this.endpoints;
+    int lo = 0;
+    int hi = partitions - 1;
+    while (lo < hi) {
+      final int mid = lo + (hi - lo + 1 >> 1);
+      if (endpoints[mid] <= index) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return lo;
+  }
+
+  @Override
+  public long getLong(final int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("" + index);
+    }
+    final int partition = partition(index);
+    return EliasFanoAppendOnlyMonotoneLongSequence.get(info[partition], selectors[partition],
+        lowerBits[partition], index - endpoints[partition]);
+  }
+
+  // Returns the offset, within the partition containing the smallest integer greater than or equal
+  // to the given one, of such integer.
+  private int nextGEQOffset(final int partition, final long integer) {
+    return EliasFanoAppendOnlyMonotoneLongSequence.nextGEQOffset(info[partition],
+        selectors[partition], zeroSelectors[partition], lowerBits[partition],
+        endpoints[partition + 1] - endpoints[partition], integer);
+  }
+
+  @Override
+  public long nextGEQLong(final long integer) {
+    if (length == 0 || integer > last) {
+      return -1L;
+    }
+    final int partition = directory.lowerBound(integer);
+    return EliasFanoAppendOnlyMonotoneLongSequence.get(info[partition], selectors[partition],
+        lowerBits[partition], nextGEQOffset(partition, integer));
+  }
+
+  @Override
+  public int rank(final long integer) {
+    if (length == 0 || integer > last) {
+      return length;
+    }
+    final int partition = directory.lowerBound(integer);
+    return endpoints[partition] + nextGEQOffset(partition, integer);
+  }
+
+  @Override
+  public void decode(final int from, final long[] dest, final int destOffset, final int count) {
+    checkDecodeBounds(from, dest, destOffset, count);
+    if (count == 0) {
+      return;
+    }
+    int partition = partition(from);
+    int offset = from - endpoints[partition];
+    int pos = destOffset;
+    int left = count;
+    while (left > 0) {
+      final int n = Math.min(left, endpoints[partition + 1] - endpoints[partition] - offset);
+      EliasFanoAppendOnlyMonotoneLongSequence.decode(info[partition], selectors[partition],
+          lowerBits[partition], offset, dest, pos, n);
+      pos += n;
+      left -= n;
+      offset = 0;
+      partition++;
+    }
+  }
+
+  // Splits on the partition boundary closest to the middle of the range.
+  @Override
+  protected int splitPoint(final int from, final int to) {
+    final int mid = (from + to) >>> 1;
+    if (to - from < 2) {
+      return mid;
+    }
+    final int partition = partition(mid);
+    final int start = endpoints[partition];
+    final int end = endpoints[partition + 1];
+    return (start > from && mid - start <= end - mid) || end >= to ? start : end;
+  }
+
+  @Override
+  public LongIterator iterator() {
+    return new EliasFanoPartitionedMonotoneLongSequenceIterator(0, length - 1);
+  }
+
+  @Override
+  public LongIterator iterator(final int from, final int to) {
+    checkIndices(from, to);
+    return new EliasFanoPartitionedMonotoneLongSequenceIterator(from, to);
+  }
+
+  private class EliasFanoPartitionedMonotoneLongSequenceIterator extends AbstractLongIterator {
+    // Number of integers decoded at once.
+    static final int BLOCK_SIZE = 64;
+
+    final long[] block = new long[BLOCK_SIZE];
+    int next;
+    final int to;
+    int blockNext = 0;
+    int blockEnd = 0;
+
+    EliasFanoPartitionedMonotoneLongSequenceIterator(final int from, final int to) {
+      next = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return blockNext < blockEnd || next <= to;
+    }
+
+    @Override
+    public long nextLong() {
+      if (blockNext == blockEnd) {
+        if (next > to) {
+          throw new NoSuchElementException();
+        }
+        blockEnd = Math.min(BLOCK_SIZE, to - next + 1);
+        decode(next, block, 0, blockEnd);
+        next += blockEnd;
+        blockNext = 0;
+      }
+      return block[blockNext++];
+    }
+  }
+
+  /**
+   * Unsupported operation since the sequence is frozen.
+   */
+  @Override
+  public boolean addLong(final long integer) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Unsupported operation since the sequence is frozen.
+   */
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public List<Long> subList(final int from, final int to) {
+    checkIndices(from, to);
+    final long[] integers = new long[to - from + 1];
+    decode(from, integers, 0, integers.length);
+    return build(integers);
+  }
+
+  @Override
+  public int bits() {
+    int bits = 0;
+    final int LONG_SIZE = Long.SIZE;
+    for (int i = 0; i < partitions; i++) {
+      final Select selector = selectors[i];
+      final SelectZero zeroSelector = zeroSelectors[i];
+      bits +=
+          lowerBits[i].length * LONG_SIZE + selector.numBits()
+              + (zeroSelector != selector ? zeroSelector.numBits() : 0)
+              + selector.bitVector().length();
+    }
+    // Each partition also holds a reference to its lower bits, selector and zero-selector, counted
+    // as a word each like the slots of the append-only sequence.
+    return bits + info.length * LONG_SIZE + endpoints.length * Integer.SIZE
+        + (lowerBits.length + selectors.length + zeroSelectors.length) * LONG_SIZE
+        + directory.bits();
+  }
+
+  /**
+   * The sequence is already stored in arrays of the exact size.
+   */
+  @Override
+  public void trimToSize() {}
+}
@@ -0,0 +1,105 @@
+/*
+ * 
+ * Copyright (C) 2014 Giulio Ermanno Pibiri
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.unipi.di;
+
+import java.io.Serializable;
+
+/**
+ * The <tt>EytzingerDirectory</tt> class represents a read-only directory over a sorted array of
+ * integers, such as the upper bounds of the buckets of a sequence, laid out in <em>Eytzinger
+ * order</em>: the keys are stored as an implicit complete binary search tree in breadth-first
+ * order, so that the first levels of the tree share a few cache lines and each step of a search
+ * only depends on the outcome of a comparison, which compiles to a branchless update.
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public final class EytzingerDirectory implements Serializable {
+  // Serial ID number.
+  private transient static final long serialVersionUID = 13071990L;
+
+  // Number of keys.
+  protected final int size;
+
+  // Keys in Eytzinger order, starting from position 1.
+  protected final long[] keys;
+
+  // Position in sorted order of each key.
+  protected final int[] positions;
+
+  /**
+   * Constructor.
+   * 
+   * @param sorted the array containing the non-decreasing keys.
+   * @param size the number of keys, taken from the beginning of the array.
+   */
+  public EytzingerDirectory(final long[] sorted, final int size) {
+    this.size = size;
+    keys = new long[size + 1];
+    positions = new int[size + 1];
+    fill(sorted, 0, 1);
+  }
+
+  // Fills the subtree rooted at position k with an in-order visit, starting from the i-th key of
+  // the sorted array: returns the position of the next key to be placed.
+  private int fill(final long[] sorted, int i, final int k) {
+    if (k <= size) {
+      i = fill(sorted, i, k << 1);
+      keys[k] = sorted[i];
+      positions[k] = i++;
+      i = fill(sorted, i, (k << 1) + 1);
+    }
+    return i;
+  }
+
+  /**
+   * Returns the position, in sorted order, of the first key that is greater than or equal to the
+   * given integer.
+   * 
+   * @param integer the integer to be searched for.
+   * @return the position of the first key greater than or equal to <tt>integer</tt>; the number of
+   *         keys if there is no such key.
+   */
+  public int lowerBound(final long integer) {
+    final long[] keys = this.keys;
+    final int size = this.size;
+    int k = 1;
+    while (k <= size) {
+      k = (k << 1) + (keys[k] < integer ? 1 : 0);
+    }
+    // Drops the trailing right turns, plus the last left turn, to get to the answer.
+    k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+    return k == 0 ? size : positions[k];
+  }
+
+  /**
+   * Returns the number of keys.
+   * 
+   * @return the number of keys.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of bits used by the directory.
+   * 
+   * @return the number of bits used by the directory.
+   */
+  public int bits() {
+    return keys.length * Long.SIZE + positions.length * Integer.SIZE;
+  }
+}
@@ -16,7 +16,9 @@
 
 package it.unipi.di;
 
-import java.util.Iterator;
+import it.unimi.dsi.fastutil.longs.AbstractLongIterator;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
 import java.util.NoSuchElementException;
 
 /**
@@ -229,11 +231,11 @@ public final class LongDynamicArray implements Iterable<Long> {
   }
 
   @Override
-  public Iterator<Long> iterator() {
+  public LongIterator iterator() {
     return new LongDynamicArrayIterator<Long>();
   }
   
-  private class LongDynamicArrayIterator<T> implements Iterator<Long> {
+  private class LongDynamicArrayIterator<T> extends AbstractLongIterator {
     private int N = length;
     private int next = 0;
 
@@ -248,16 +250,11 @@ public final class LongDynamicArray implements Iterable<Long> {
     }
 
     @Override
-    public Long next() {
+    public long nextLong() {
       if (hasNext()) {
         return array[next++];
       }
       throw new NoSuchElementException();
     }
-
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException();
-    }
   }
 }
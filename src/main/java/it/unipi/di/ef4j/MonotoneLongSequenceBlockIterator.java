@@ -0,0 +1,43 @@
+/*
+ * 
+ * Copyright (C) 2014 Giulio Ermanno Pibiri
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.unipi.di;
+
+/**
+ * The <tt>MonotoneLongSequenceBlockIterator</tt> interface defines an iterator that decodes a
+ * sequence of non-decreasing monotone integers one <em>block</em> at a time, writing the integers
+ * into a buffer supplied by the caller instead of returning them one by one.
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public interface MonotoneLongSequenceBlockIterator {
+  /**
+   * Returns <tt>true</tt> if there are integers left to be decoded.
+   * 
+   * @return <tt>true</tt> if there are integers left to be decoded; <tt>false</tt> otherwise.
+   */
+  boolean hasNext();
+
+  /**
+   * Decodes the next integers of the sequence into the given buffer.
+   * 
+   * @param dest the buffer to be filled.
+   * @param destOffset the position of the buffer where to write the first integer.
+   * @param count the maximum number of integers to be decoded.
+   * @return the number of decoded integers: <tt>0</tt> if there are no integers left.
+   */
+  int next(final long[] dest, final int destOffset, final int count);
+}
@@ -0,0 +1,66 @@
+/*
+ * 
+ * Copyright (C) 2014 Giulio Ermanno Pibiri
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.unipi.di;
+
+/**
+ * The <tt>MonotoneLongSequenceCursor</tt> interface defines a <em>forward-only</em> cursor over a
+ * sequence of non-decreasing monotone integers. A cursor remembers its current position, so that a
+ * series of <em>next greater or equal</em> queries with non-decreasing arguments, as the ones
+ * issued while intersecting posting lists, never restarts the search from the beginning of the
+ * sequence.
+ * 
+ * <p>
+ * A newly created cursor is positioned before the first integer of the sequence: its position is
+ * <tt>-1</tt>. Once the cursor moves past the last integer, its position is equal to the length of
+ * the sequence and its value is <tt>-1</tt>.
+ * </p>
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public interface MonotoneLongSequenceCursor {
+  /**
+   * Moves the cursor to the first integer, at or after the current position, that is greater than
+   * or equal to the given one. The cursor never moves backwards.
+   * 
+   * @param integer the integer to be reached.
+   * @return the integer the cursor is positioned on if it exists; <tt>-1</tt> otherwise.
+   */
+  long advanceTo(final long integer);
+
+  /**
+   * Moves the cursor to the next integer of the sequence.
+   * 
+   * @return the integer the cursor is positioned on if it exists; <tt>-1</tt> otherwise.
+   */
+  long next();
+
+  /**
+   * Returns the integer the cursor is positioned on.
+   * 
+   * @return the integer the cursor is positioned on; <tt>-1</tt> if the cursor is positioned before
+   *         the first integer or after the last one.
+   */
+  long value();
+
+  /**
+   * Returns the position of the cursor.
+   * 
+   * @return the position of the cursor: <tt>-1</tt> before the first integer, the length of the
+   *         sequence after the last one.
+   */
+  int position();
+}
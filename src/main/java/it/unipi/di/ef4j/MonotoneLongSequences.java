@@ -0,0 +1,408 @@
+/*
+ * 
+ * Copyright (C) 2014 Giulio Ermanno Pibiri
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.unipi.di;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+import it.unimi.dsi.fastutil.longs.AbstractLongIterator;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+/**
+ * The <tt>MonotoneLongSequences</tt> class provides static methods that combine several sequences
+ * of non-decreasing monotone integers, such as the posting lists of an inverted index.
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public final class MonotoneLongSequences {
+  private MonotoneLongSequences() {}
+
+  /**
+   * Iterator over the intersection of the given sequences, i.e., over the distinct integers that
+   * appear in all of them. The intersection is driven by the shortest sequence: each of its
+   * integers is searched in the others through their cursors, which never restart the search from
+   * the beginning of a sequence.
+   * 
+   * @param sequences the sequences to be intersected.
+   * @return the distinct integers common to all the sequences, in increasing order.
+   * @throws IllegalArgumentException if no sequence is given.
+   * @see MonotoneLongSequenceCursor
+   */
+  public static LongIterator intersectionIterator(final AbstractMonotoneLongSequence... sequences) {
+    if (sequences.length == 0) {
+      throw new IllegalArgumentException("At least one sequence must be given.");
+    }
+    return new IntersectionIterator(sequences);
+  }
+
+  /**
+   * Materializes the intersection of the given sequences into a new Elias-Fano append-only
+   * sequence, whose bucket size is chosen according to the length of the shortest sequence.
+   * 
+   * @param sequences the sequences to be intersected.
+   * @return the distinct integers common to all the sequences.
+   * @throws IllegalArgumentException if no sequence is given.
+   * @see #intersectionIterator(AbstractMonotoneLongSequence...)
+   */
+  public static EliasFanoAppendOnlyMonotoneLongSequence intersection(
+      final AbstractMonotoneLongSequence... sequences) {
+    LongIterator it = intersectionIterator(sequences);
+    int shortest = Integer.MAX_VALUE;
+    for (AbstractMonotoneLongSequence s : sequences) {
+      shortest = Math.min(shortest, s.size());
+    }
+
+    EliasFanoAppendOnlyMonotoneLongSequence intersection =
+        new EliasFanoAppendOnlyMonotoneLongSequence(
+            EliasFanoAppendOnlyMonotoneLongSequence.bucketSize(shortest));
+    while (it.hasNext()) {
+      intersection.addLong(it.nextLong());
+    }
+    return intersection;
+  }
+
+  /**
+   * Iterator over the union of the given sequences, i.e., over the result of merging them. The
+   * sequences are decoded one block at a time and merged with a binary heap over the heads of the
+   * blocks.
+   * 
+   * @param distinct if <tt>true</tt>, integers appearing more than once are returned only once.
+   * @param sequences the sequences to be merged.
+   * @return the integers of all the sequences, in non-decreasing order.
+   * @see MonotoneLongSequenceBlockIterator
+   */
+  public static LongIterator unionIterator(final boolean distinct,
+      final AbstractMonotoneLongSequence... sequences) {
+    return new UnionIterator(distinct, sequences);
+  }
+
+  /**
+   * Materializes the union of the given sequences into a new Elias-Fano append-only sequence,
+   * whose bucket size is chosen according to the overall length of the sequences. The merged
+   * integers are appended one bucket at a time through
+   * {@link EliasFanoAppendOnlyMonotoneLongSequence#addLongs(long[], int, int)}.
+   * 
+   * @param distinct if <tt>true</tt>, integers appearing more than once are stored only once.
+   * @param sequences the sequences to be merged.
+   * @return the integers of all the sequences.
+   * @see #unionIterator(boolean, AbstractMonotoneLongSequence...)
+   */
+  public static EliasFanoAppendOnlyMonotoneLongSequence union(final boolean distinct,
+      final AbstractMonotoneLongSequence... sequences) {
+    long length = 0;
+    for (AbstractMonotoneLongSequence s : sequences) {
+      length += s.size();
+    }
+
+    final int B = EliasFanoAppendOnlyMonotoneLongSequence.bucketSize(length);
+    EliasFanoAppendOnlyMonotoneLongSequence union = new EliasFanoAppendOnlyMonotoneLongSequence(B);
+    UnionIterator it = new UnionIterator(distinct, sequences);
+    final long[] bucket = new long[B];
+    while (it.hasNext()) {
+      union.addLongs(bucket, 0, it.next(bucket, 0, B));
+    }
+    return union;
+  }
+
+  private static class UnionIterator extends AbstractLongIterator implements
+      MonotoneLongSequenceBlockIterator {
+    // Number of integers decoded at once from each sequence.
+    static final int BLOCK_SIZE = 128;
+
+    final boolean distinct;
+    final MonotoneLongSequenceBlockIterator[] its;
+    final long[][] blocks;
+    final int[] positions;
+    final int[] ends;
+
+    // Binary min-heap of the indices of the sequences, ordered by the heads of their blocks.
+    final int[] heap;
+    int size = 0;
+
+    boolean hasNext;
+    long next;
+
+    UnionIterator(final boolean distinct, final AbstractMonotoneLongSequence[] sequences) {
+      this.distinct = distinct;
+      final int k = sequences.length;
+      its = new MonotoneLongSequenceBlockIterator[k];
+      blocks = new long[k][];
+      positions = new int[k];
+      ends = new int[k];
+      heap = new int[k];
+
+      for (int i = 0; i < k; i++) {
+        its[i] = sequences[i].blockIterator();
+        blocks[i] = new long[BLOCK_SIZE];
+        if (refill(i)) {
+          heap[size] = i;
+          siftUp(size++);
+        }
+      }
+
+      hasNext = size > 0;
+      if (hasNext) {
+        next = pop();
+      }
+    }
+
+    // Decodes the next block of the i-th sequence.
+    private boolean refill(final int i) {
+      if (!its[i].hasNext()) {
+        return false;
+      }
+      ends[i] = its[i].next(blocks[i], 0, BLOCK_SIZE);
+      positions[i] = 0;
+      return true;
+    }
+
+    private long head(final int i) {
+      return blocks[i][positions[i]];
+    }
+
+    // Removes and returns the smallest head.
+    private long pop() {
+      final int i = heap[0];
+      final long result = blocks[i][positions[i]++];
+      if (positions[i] == ends[i] && !refill(i)) {
+        heap[0] = heap[--size];
+      }
+      if (size > 1) {
+        siftDown(0);
+      }
+      return result;
+    }
+
+    private void siftUp(int p) {
+      final int[] heap = this.heap;
+      final int e = heap[p];
+      final long v = head(e);
+      while (p > 0) {
+        final int parent = (p - 1) >>> 1;
+        if (head(heap[parent]) <= v) {
+          break;
+        }
+        heap[p] = heap[parent];
+        p = parent;
+      }
+      heap[p] = e;
+    }
+
+    private void siftDown(int p) {
+      final int[] heap = this.heap;
+      final int size = this.size;
+      final int e = heap[p];
+      final long v = head(e);
+      int child;
+      while ((child = (p << 1) + 1) < size) {
+        if (child + 1 < size && head(heap[child + 1]) < head(heap[child])) {
+          child++;
+        }
+        if (v <= head(heap[child])) {
+          break;
+        }
+        heap[p] = heap[child];
+        p = child;
+      }
+      heap[p] = e;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return hasNext;
+    }
+
+    @Override
+    public long nextLong() {
+      if (!hasNext) {
+        throw new NoSuchElementException();
+      }
+      final long result = next;
+      if (distinct) {
+        while (size > 0 && head(heap[0]) == result) {
+          pop();
+        }
+      }
+      hasNext = size > 0;
+      if (hasNext) {
+        next = pop();
+      }
+      return result;
+    }
+
+    @Override
+    public int next(final long[] dest, final int destOffset, final int count) {
+      int n = 0;
+      while (n < count && hasNext) {
+        dest[destOffset + n++] = nextLong();
+      }
+      return n;
+    }
+  }
+
+  /**
+   * Materializes the difference between two sequences, i.e., the integers of the first sequence
+   * that do not appear in the second one, into a new Elias-Fano append-only sequence. Both
+   * sequences are skipped through with their cursors, so that only the integers to be removed are
+   * searched: the spans of the first sequence in between them are decoded one block at a time and
+   * appended in bulk. If the first sequence is an {@link EliasFanoAppendOnlyMonotoneLongSequence},
+   * its untouched compressed buckets are copied verbatim, without decoding them, as long as the
+   * number of integers removed before them is a multiple of the bucket size, e.g., before the first
+   * removed integer or after the removal of whole buckets.
+   * 
+   * @param a the sequence whose integers are kept.
+   * @param b the sequence whose integers are removed.
+   * @return the integers of <tt>a</tt> that do not appear in <tt>b</tt>, duplicates included.
+   */
+  public static EliasFanoAppendOnlyMonotoneLongSequence difference(
+      final AbstractMonotoneLongSequence a, final AbstractMonotoneLongSequence b) {
+    final int length = a.size();
+    final int B =
+        a instanceof EliasFanoAppendOnlyMonotoneLongSequence
+            ? ((EliasFanoAppendOnlyMonotoneLongSequence) a).B
+            : EliasFanoAppendOnlyMonotoneLongSequence.bucketSize(length);
+    EliasFanoAppendOnlyMonotoneLongSequence difference =
+        new EliasFanoAppendOnlyMonotoneLongSequence(B);
+    final long[] block = new long[B];
+
+    MonotoneLongSequenceCursor ca = a.cursor();
+    MonotoneLongSequenceCursor cb = b.cursor();
+    int from = 0;
+    long v = a.isEmpty() || b.isEmpty() ? -1L : cb.next();
+    while (v != -1L) {
+      final long w = ca.advanceTo(v);
+      if (w == -1L) {
+        break;
+      }
+      if (w > v) {
+        v = cb.advanceTo(w);
+        continue;
+      }
+
+      // All the occurrences of v in a are dropped.
+      from = append(difference, a, from, ca.position(), block);
+      if (v == Long.MAX_VALUE) {
+        from = length;
+        break;
+      }
+      ca.advanceTo(v + 1);
+      from = ca.position();
+      v = cb.advanceTo(v + 1);
+    }
+    append(difference, a, from, length, block);
+    return difference;
+  }
+
+  // Appends the integers of s in between positions from (included) and to (excluded) to the given
+  // sequence, returning to. If s is an Elias-Fano append-only sequence and as many integers have
+  // been dropped so far as a multiple of its bucket size, the buffer of the given sequence is filled
+  // up to a bucket boundary, which is a bucket boundary of s as well: the following buckets of s are
+  // then copied verbatim, but for the first one if the last integer of the given sequence is not
+  // the upper bound of the preceding bucket, which is encoded anew.
+  private static int append(final EliasFanoAppendOnlyMonotoneLongSequence dest,
+      final AbstractMonotoneLongSequence s, int from, final int to, final long[] block) {
+    if (s instanceof EliasFanoAppendOnlyMonotoneLongSequence
+        && ((EliasFanoAppendOnlyMonotoneLongSequence) s).B == dest.B) {
+      final EliasFanoAppendOnlyMonotoneLongSequence ef =
+          (EliasFanoAppendOnlyMonotoneLongSequence) s;
+      final int B = ef.B;
+      if (dest.size() % B == from % B) {
+        from = decode(dest, s, from, Math.min(to, from + (B - from % B) % B), block);
+        int bucket = from / B;
+        final int end = Math.min(ef.buckets, to / B);
+        if (from % B == 0 && bucket < end) {
+          if (!dest.isEmpty() && dest.last != ef.upperBound(bucket - 1)) {
+            from = decode(dest, s, from, from + B, block);
+            bucket++;
+          }
+          dest.appendBuckets(ef, bucket, end - bucket);
+          from = Math.max(from, end * B);
+        }
+      }
+    }
+    return decode(dest, s, from, to, block);
+  }
+
+  // Decodes the integers of s in between positions from (included) and to (excluded) one block at
+  // a time and appends them to the given sequence, returning to.
+  private static int decode(final EliasFanoAppendOnlyMonotoneLongSequence dest,
+      final AbstractMonotoneLongSequence s, int from, final int to, final long[] block) {
+    while (from < to) {
+      final int n = Math.min(block.length, to - from);
+      s.decode(from, block, 0, n);
+      dest.addLongs(block, 0, n);
+      from += n;
+    }
+    return to;
+  }
+
+  private static class IntersectionIterator extends AbstractLongIterator {
+    // Cursors over the sequences, sorted by increasing length of the sequences.
+    final MonotoneLongSequenceCursor[] cursors;
+    long next;
+
+    IntersectionIterator(final AbstractMonotoneLongSequence[] sequences) {
+      AbstractMonotoneLongSequence[] sorted = sequences.clone();
+      Arrays.sort(sorted, new Comparator<AbstractMonotoneLongSequence>() {
+        @Override
+        public int compare(final AbstractMonotoneLongSequence a,
+            final AbstractMonotoneLongSequence b) {
+          return Integer.compare(a.size(), b.size());
+        }
+      });
+
+      cursors = new MonotoneLongSequenceCursor[sorted.length];
+      for (int i = 0; i < sorted.length; i++) {
+        cursors[i] = sorted[i].cursor();
+      }
+      next = sorted[0].isEmpty() ? -1L : search(cursors[0].next());
+    }
+
+    // Returns the smallest integer common to all the sequences that is greater than or equal to the
+    // given candidate, taken from the shortest sequence; -1 if such value does not exist.
+    private long search(long candidate) {
+      final MonotoneLongSequenceCursor[] cursors = this.cursors;
+      int i = 1;
+      while (candidate != -1L && i < cursors.length) {
+        final long v = cursors[i].advanceTo(candidate);
+        if (v == candidate) {
+          i++;
+        } else {
+          candidate = v == -1L ? -1L : cursors[0].advanceTo(v);
+          i = 1;
+        }
+      }
+      return candidate;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != -1L;
+    }
+
+    @Override
+    public long nextLong() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final long result = next;
+      next = result == Long.MAX_VALUE ? -1L : search(cursors[0].advanceTo(result + 1));
+      return result;
+    }
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * 
+ * Copyright (C) 2014 Giulio Ermanno Pibiri
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.unipi.di;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The <tt>PiecewiseLinearDirectory</tt> class represents a read-only model of a sorted array of
+ * integers, such as the upper bounds of the buckets of a sequence, that predicts the position of the
+ * first key greater than or equal to a given integer. The keys are split into maximal segments
+ * where a line passing through the first key predicts the position of every distinct key with an
+ * error of at most <tt>epsilon</tt>, using the greedy shrinking cone construction. Only the first
+ * key, the starting position and the slope of each segment are stored, so that the keys themselves
+ * are not replicated: the caller corrects the prediction with a local search over its own keys.
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public final class PiecewiseLinearDirectory implements Serializable {
+  // Serial ID number.
+  private transient static final long serialVersionUID = 13071990L;
+
+  // Number of keys.
+  protected final int size;
+
+  // Maximum error of the prediction for the keys.
+  protected final int epsilon;
+
+  // Number of segments.
+  protected final int segments;
+
+  // First key of each segment.
+  protected final long[] firstKeys;
+
+  // Position of the first key of each segment, plus the number of keys as a sentinel.
+  protected final int[] starts;
+
+  // Slope of each segment.
+  protected final double[] slopes;
+
+  /**
+   * Constructor.
+   * 
+   * @param sorted the array containing the non-decreasing keys.
+   * @param size the number of keys, taken from the beginning of the array.
+   * @param epsilon the maximum error of the prediction for the keys.
+   * @throws IllegalArgumentException if <tt>epsilon</tt> is negative.
+   */
+  public PiecewiseLinearDirectory(final long[] sorted, final int size, final int epsilon) {
+    if (epsilon < 0) {
+      throw new IllegalArgumentException("Negative epsilon value.");
+    }
+    this.size = size;
+    this.epsilon = epsilon;
+
+    long[] firstKeys = new long[16];
+    int[] starts = new int[17];
+    double[] slopes = new double[16];
+    int segments = 0;
+
+    int i = 0;
+    while (i < size) {
+      final long firstKey = sorted[i];
+      final int start = i;
+      double minSlope = 0;
+      double maxSlope = Double.POSITIVE_INFINITY;
+      // Skips the duplicates of the first key: only the first occurrence of a key is a point.
+      while (++i < size && sorted[i] == firstKey) {
+      }
+      while (i < size) {
+        final double dx = sorted[i] - firstKey;
+        final int dy = i - start;
+        final double min = Math.max(minSlope, (dy - epsilon) / dx);
+        final double max = Math.min(maxSlope, (dy + epsilon) / dx);
+        if (min > max) {
+          break;
+        }
+        minSlope = min;
+        maxSlope = max;
+        final long key = sorted[i];
+        while (++i < size && sorted[i] == key) {
+        }
+      }
+
+      if (segments == firstKeys.length) {
+        firstKeys = Arrays.copyOf(firstKeys, segments << 1);
+        starts = Arrays.copyOf(starts, (segments << 1) + 1);
+        slopes = Arrays.copyOf(slopes, segments << 1);
+      }
+      firstKeys[segments] = firstKey;
+      starts[segments] = start;
+      slopes[segments++] = maxSlope == Double.POSITIVE_INFINITY ? 0 : (minSlope + maxSlope) / 2;
+    }
+    starts[segments] = size;
+
+    this.segments = segments;
+    this.firstKeys = Arrays.copyOf(firstKeys, segments);
+    this.starts = Arrays.copyOf(starts, segments + 1);
+    this.slopes = Arrays.copyOf(slopes, segments);
+  }
+
+  /**
+   * Returns the last segment whose first key is smaller than the given integer.
+   * 
+   * @param integer the integer to be searched for.
+   * @return the last segment whose first key is smaller than <tt>integer</tt>; <tt>-1</tt> if the
+   *         first key is greater than or equal to <tt>integer</tt>.
+   */
+  public int segment(final long integer) {
+    final long[] firstKeys = this.firstKeys;
+    int lo = 0;
+    int hi = segments;
+    while (lo < hi) {
+      final int mid = lo + (hi - lo >> 1);
+      if (firstKeys[mid] < integer) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo - 1;
+  }
+
+  /**
+   * Returns the predicted position, in sorted order, of the first key that is greater than or equal
+   * to the given integer, which must fall within the given segment. The predicted position is within
+   * <tt>epsilon + 1</tt> of the exact one, unless some keys in the segment occur more than once.
+   * 
+   * @param segment the segment returned by {@link #segment(long)} for <tt>integer</tt>.
+   * @param integer the integer to be searched for.
+   * @return the predicted position, between the start of the segment, excluded, and the start of
+   *         the following one, included.
+   */
+  public int predict(final int segment, final long integer) {
+    final int start = starts[segment];
+    final double prediction = start + slopes[segment] * (double) (integer - firstKeys[segment]);
+    final int end = starts[segment + 1];
+    if (prediction >= end) {
+      return end;
+    }
+    final int position = (int) prediction;
+    return position > start ? position : start + 1;
+  }
+
+  /**
+   * Returns the position of the first key of the given segment.
+   * 
+   * @param segment the index of the segment; the number of segments for the number of keys.
+   * @return the position of the first key of the segment.
+   */
+  public int start(final int segment) {
+    return starts[segment];
+  }
+
+  /**
+   * Returns the maximum error of the prediction for the keys.
+   * 
+   * @return the maximum error of the prediction for the keys.
+   */
+  public int epsilon() {
+    return epsilon;
+  }
+
+  /**
+   * Returns the number of segments.
+   * 
+   * @return the number of segments.
+   */
+  public int segments() {
+    return segments;
+  }
+
+  /**
+   * Returns the number of keys.
+   * 
+   * @return the number of keys.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of bits used by the directory.
+   * 
+   * @return the number of bits used by the directory.
+   */
+  public int bits() {
+    return firstKeys.length * Long.SIZE + starts.length * Integer.SIZE + slopes.length * Double.SIZE;
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * 
+ * Copyright (C) 2014 Giulio Ermanno Pibiri
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.unipi.di;
+
+import it.unimi.dsi.bits.BitVector;
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.sux4j.bits.Select;
+import it.unimi.dsi.sux4j.bits.SelectZero;
+
+/**
+ * The <tt>SmallSelect</tt> class implements both <em>select</em> and <em>select zero</em> over a
+ * short bit vector, such as the upper bits of an Elias-Fano bucket. Instead of an inventory, it
+ * stores the number of ones preceding each block of eight words, and only if the bit vector spans
+ * more than one block: a query locates its block with a binary search over these samples, scans at
+ * most eight words with popcounts and finally selects within a word with broadword operations.
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public final class SmallSelect implements Select, SelectZero {
+  // Serial ID number.
+  private transient static final long serialVersionUID = 13071990L;
+
+  // Base 2 logarithm of the number of words of a block.
+  protected transient static final int LOG_BLOCK_WORDS = 3;
+
+  // Number of bits of a block.
+  protected transient static final int BLOCK_BITS = Long.SIZE << LOG_BLOCK_WORDS;
+
+  // The underlying bit vector.
+  protected final BitVector bitVector;
+
+  // The words of the underlying bit vector.
+  protected final long[] bits;
+
+  // Number of ones preceding each block: null if the bit vector spans a single block.
+  protected final int[] ones;
+
+  /**
+   * Constructor.
+   * 
+   * @param bitVector the bit vector to be indexed, whose length must fit an integer.
+   */
+  public SmallSelect(final BitVector bitVector) {
+    this.bitVector = bitVector;
+    bits = bitVector.bits();
+    final int words = (int) (bitVector.length() + Long.SIZE - 1 >>> 6);
+    final int blocks = (words + (1 << LOG_BLOCK_WORDS) - 1) >>> LOG_BLOCK_WORDS;
+
+    if (blocks > 1) {
+      ones = new int[blocks];
+      int count = 0;
+      for (int i = 0; i < words; i++) {
+        if ((i & (1 << LOG_BLOCK_WORDS) - 1) == 0) {
+          ones[i >>> LOG_BLOCK_WORDS] = count;
+        }
+        count += Long.bitCount(bits[i]);
+      }
+    } else {
+      ones = null;
+    }
+  }
+
+  @Override
+  public long select(final long rank) {
+    final long[] bits = this.bits;
+    final int[] ones = this.ones;
+    int word = 0;
+    int r = (int) rank;
+
+    if (ones != null) {
+      int lo = 0;
+      int hi = ones.length - 1;
+      while (lo < hi) {
+        final int mid = (lo + hi + 1) >>> 1;
+        if (ones[mid] <= r) {
+          lo = mid;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      word = lo << LOG_BLOCK_WORDS;
+      r -= ones[lo];
+    }
+
+    int count;
+    while ((count = Long.bitCount(bits[word])) <= r) {
+      r -= count;
+      word++;
+    }
+    return ((long) word << 6) + Fast.select(bits[word], r);
+  }
+
+  @Override
+  public long selectZero(final long rank) {
+    final long[] bits = this.bits;
+    final int[] ones = this.ones;
+    int word = 0;
+    int r = (int) rank;
+
+    if (ones != null) {
+      int lo = 0;
+      int hi = ones.length - 1;
+      while (lo < hi) {
+        final int mid = (lo + hi + 1) >>> 1;
+        if (mid * BLOCK_BITS - ones[mid] <= r) {
+          lo = mid;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      word = lo << LOG_BLOCK_WORDS;
+      r -= lo * BLOCK_BITS - ones[lo];
+    }
+
+    int count;
+    while ((count = Long.bitCount(~bits[word])) <= r) {
+      r -= count;
+      word++;
+    }
+    return ((long) word << 6) + Fast.select(~bits[word], r);
+  }
+
+  /**
+   * Returns the number of ones preceding the given position.
+   * 
+   * @param position a position smaller than the length of the bit vector.
+   * @return the number of ones preceding <tt>position</tt>.
+   */
+  public long rank(final long position) {
+    final long[] bits = this.bits;
+    final int word = (int) (position >>> 6);
+    int i = 0;
+    long count = 0;
+    if (ones != null) {
+      i = word & -(1 << LOG_BLOCK_WORDS);
+      count = ones[word >>> LOG_BLOCK_WORDS];
+    }
+    while (i < word) {
+      count += Long.bitCount(bits[i++]);
+    }
+    return (position & 63) == 0 ? count : count + Long.bitCount(bits[word] & (1L << position) - 1);
+  }
+
+  @Override
+  public BitVector bitVector() {
+    return bitVector;
+  }
+
+  @Override
+  public long numBits() {
+    return ones == null ? 0 : (long) ones.length * Integer.SIZE;
+  }
+}
@@ -1,6 +1,7 @@
 package it.unipi.di;
 
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertArrayEquals;
 
@@ -8,6 +9,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
 import org.junit.Test;
 
 /**
@@ -154,6 +157,31 @@ public class EliasFanoAdaptiveAppendOnlyMonotoneLongSequenceTest {
     }
   }
 
+  @Test
+  public void testIteratorFromTo() {
+    // With B = 16, chunks start at positions 0, 2^19 + 1, 2^20 + 1 and 2^21 + 1, so that some of
+    // the ranges below start inside chunks that are neither the first nor the last one.
+    length = 2500000;
+    monotoneSequence = monotoneSequenceGenerator(length, 100);
+    s = new EliasFanoAdaptiveAppendOnlyMonotoneLongSequence(16);
+    for (int i = 0; i < length; i++) {
+      s.addLong(monotoneSequence[i]);
+    }
+
+    final int[] starts = {0, 1 << 19, (1 << 19) + 1, (1 << 20) + 1, (1 << 21) + 1};
+    for (int start : starts) {
+      for (int k = 0; k < 20; k++) {
+        final int from = start + (int) (Math.random() * 1000);
+        final int to = Math.min(length - 1, from + (int) (Math.random() * 1000000));
+        LongIterator it = s.iterator(from, to);
+        for (int i = from; i <= to; i++) {
+          assertEquals(it.nextLong(), (long) monotoneSequence[i]);
+        }
+        assertFalse(it.hasNext());
+      }
+    }
+  }
+
   @Test
   public void testNextGEQ() {
     buildSequence();
@@ -307,4 +335,154 @@ public class EliasFanoAdaptiveAppendOnlyMonotoneLongSequenceTest {
     s.add(s.get(s.length - 1));
     assertEquals(s.lastIndexOf(s.get(s.length - 1)), s.size() - 1);
   }
+
+  @Test
+  public void testPrimitiveAccess() {
+    buildSequence();
+    LongIterator it = s.iterator();
+    for (int i = 0; i < s.size(); i++) {
+      assertEquals(s.getLong(i), (long) monotoneSequence[i]);
+      assertEquals(it.nextLong(), (long) monotoneSequence[i]);
+    }
+    assertFalse(it.hasNext());
+
+    final long last = s.getLong(s.size() - 1);
+    s.addLong(last + 7);
+    assertEquals(s.nextGEQLong(last + 1), last + 7);
+    assertTrue(s.contains(last + 7));
+    assertFalse(s.contains(last + 6));
+  }
+
+  @Test
+  public void testCursor() {
+    buildSequence();
+
+    MonotoneLongSequenceCursor cursor = s.cursor();
+    assertEquals(cursor.position(), -1);
+    for (int i = 0; i < length; i++) {
+      assertEquals(cursor.next(), (long) monotoneSequence[i]);
+      assertEquals(cursor.position(), i);
+    }
+    assertEquals(cursor.next(), -1L);
+    assertEquals(cursor.position(), length);
+
+    cursor = s.cursor();
+    int j = 0;
+    long integer = 0L;
+    while (true) {
+      // Skip forward by a random distance, sometimes landing inside the current bucket.
+      integer += (long) (Math.random() * (Math.random() < 0.5 ? 2000 : 2000000));
+      while (j < length && monotoneSequence[j] < integer) {
+        j++;
+      }
+      if (j == length) {
+        assertEquals(cursor.advanceTo(integer), -1L);
+        assertEquals(cursor.position(), length);
+        break;
+      }
+      assertEquals(cursor.advanceTo(integer), (long) monotoneSequence[j]);
+      assertEquals(cursor.value(), (long) monotoneSequence[j]);
+      assertEquals(cursor.position(), j);
+      if (Math.random() < 0.5 && j + 1 < length) {
+        assertEquals(cursor.next(), (long) monotoneSequence[++j]);
+        integer = monotoneSequence[j];
+      }
+    }
+  }
+
+  @Test
+  public void testRank() {
+    buildSequence();
+
+    for (int k = 0; k < 10000; k++) {
+      final int i = (int) (Math.random() * length);
+      final long integer = monotoneSequence[i];
+      assertEquals(s.rank(integer), i);
+      assertEquals(s.rank(integer + 1), i + 1);
+      assertEquals(s.nextGEQIndex(integer), i);
+      assertEquals(s.indexOf(integer), i);
+      assertEquals(s.lastIndexOf(integer), i);
+    }
+    assertEquals(s.rank(0L), 0);
+    assertEquals(s.rank(monotoneSequence[length - 1] + 1), length);
+    assertEquals(s.nextGEQIndex(monotoneSequence[length - 1] + 1), -1);
+    assertEquals(s.indexOf(monotoneSequence[length - 1] + 1), -1);
+  }
+
+  @Test
+  public void testPrevLEQAndCount() {
+    buildSequence();
+
+    for (int k = 0; k < 10000; k++) {
+      final int i = (int) (Math.random() * (length - 1));
+      final long integer = monotoneSequence[i];
+      assertEquals(s.prevLEQ(integer), integer);
+      assertEquals(s.prevLEQ(monotoneSequence[i + 1] - 1), integer);
+      assertEquals(s.count(integer, monotoneSequence[i + 1]), 2);
+      assertEquals(s.count(integer + 1, monotoneSequence[i + 1] - 1), 0);
+    }
+    assertEquals(s.prevLEQ(monotoneSequence[0] - 1), -1L);
+    assertEquals(s.prevLEQ(Long.MAX_VALUE), (long) monotoneSequence[length - 1]);
+    assertEquals(s.count(0L, Long.MAX_VALUE), length);
+  }
+
+  @Test
+  public void testValueRangeIterator() {
+    buildSequence();
+
+    for (int k = 0; k < 100; k++) {
+      final int from = (int) (Math.random() * length);
+      final int to = Math.min(length - 1, from + (int) (Math.random() * 100000));
+      LongIterator it = s.valueRangeIterator(from > 0 ? monotoneSequence[from - 1] + 1 : 0,
+          monotoneSequence[to]);
+      for (int i = from; i <= to; i++) {
+        assertEquals(it.nextLong(), (long) monotoneSequence[i]);
+      }
+      assertFalse(it.hasNext());
+    }
+    assertFalse(s.valueRangeIterator(monotoneSequence[length - 1] + 1, Long.MAX_VALUE).hasNext());
+  }
+
+  @Test
+  public void testDecode() {
+    buildSequence();
+
+    final long[] dest = new long[100000];
+    for (int k = 0; k < 100; k++) {
+      final int from = (int) (Math.random() * length);
+      final int count = Math.min(length - from, (int) (Math.random() * dest.length));
+      s.decode(from, dest, 0, count);
+      for (int i = 0; i < count; i++) {
+        assertEquals(dest[i], (long) monotoneSequence[from + i]);
+      }
+    }
+
+    MonotoneLongSequenceBlockIterator it = s.blockIterator();
+    int i = 0;
+    while (it.hasNext()) {
+      final int n = it.next(dest, 0, 1000);
+      for (int j = 0; j < n; j++) {
+        assertEquals(dest[j], (long) monotoneSequence[i++]);
+      }
+    }
+    assertEquals(i, length);
+  }
+
+  @Test
+  public void testLongStream() {
+    buildSequence();
+
+    long sum = 0;
+    for (int i = 0; i < length; i++) {
+      sum += monotoneSequence[i];
+    }
+    assertEquals(s.longStream().sum(), sum);
+    assertEquals(s.parallelLongStream().sum(), sum);
+
+    final long[] values = s.parallelLongStream().toArray();
+    assertEquals(values.length, length);
+    for (int i = 0; i < length; i++) {
+      assertEquals(values[i], (long) monotoneSequence[i]);
+    }
+  }
 }
@@ -1,12 +1,19 @@
 package it.unipi.di;
 
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertArrayEquals;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
 
 import org.junit.Test;
 
@@ -32,6 +39,17 @@ public class EliasFanoAppendOnlyMonotoneLongSequenceTest {
     return monotoneSequence;
   }
 
+  private long[] duplicatesSequenceGenerator(final int length, final int maxGap) {
+    long[] sequence = new long[length];
+
+    long prevInt = 0L;
+    for (int i = 0; i < length; i++) {
+      prevInt += (long) (Math.random() * maxGap) * (long) (Math.random() * 2);
+      sequence[i] = prevInt;
+    }
+    return sequence;
+  }
+
   private void buildSequence() {
     // Generate a random length in between 2M and 3M.
     length = (int) ((Math.random() * 1000000) + 2000000);
@@ -119,6 +137,7 @@ public class EliasFanoAppendOnlyMonotoneLongSequenceTest {
   public void testIsEmpty() {
     EliasFanoAppendOnlyMonotoneLongSequence s = new EliasFanoAppendOnlyMonotoneLongSequence(1000);
     assertTrue(s.isEmpty());
+    assertFalse(s.contains(-1L));
 
     buildSequence();
     s.clear();
@@ -327,4 +346,725 @@ public class EliasFanoAppendOnlyMonotoneLongSequenceTest {
     s.add(s.last);
     assertEquals(s.lastIndexOf(s.last), s.size() - 1);
   }
+
+  @Test
+  public void testPrimitiveAccess() {
+    buildSequence();
+    LongIterator it = s.iterator();
+    for (int i = 0; i < s.size(); i++) {
+      assertEquals(s.getLong(i), (long) monotoneSequence[i]);
+      assertEquals(it.nextLong(), (long) monotoneSequence[i]);
+    }
+    assertFalse(it.hasNext());
+
+    final long last = s.last;
+    s.addLong(last + 7);
+    assertEquals(s.nextGEQLong(last + 1), last + 7);
+    assertTrue(s.contains(last + 7));
+    assertFalse(s.contains(last + 6));
+  }
+
+  @Test
+  public void testNextGEQWithDuplicates() {
+    // Generate 20000 integers with gaps in between 0 and 50, so that duplicates are frequent.
+    final int length = 20000;
+    final long[] values = duplicatesSequenceGenerator(length, 50);
+    final long prevInt = values[length - 1];
+
+    EliasFanoAppendOnlyMonotoneLongSequence s = new EliasFanoAppendOnlyMonotoneLongSequence(64);
+    for (int i = 0; i < length; i++) {
+      s.addLong(values[i]);
+    }
+
+    int j = 0;
+    for (long x = 0; x <= prevInt; x++) {
+      while (values[j] < x) {
+        j++;
+      }
+      assertEquals(s.nextGEQLong(x), values[j]);
+    }
+    assertEquals(s.nextGEQLong(prevInt + 1), -1L);
+  }
+
+  @Test
+  public void testCursor() {
+    buildSequence();
+
+    MonotoneLongSequenceCursor cursor = s.cursor();
+    assertEquals(cursor.position(), -1);
+    for (int i = 0; i < length; i++) {
+      assertEquals(cursor.next(), (long) monotoneSequence[i]);
+      assertEquals(cursor.position(), i);
+    }
+    assertEquals(cursor.next(), -1L);
+    assertEquals(cursor.position(), length);
+
+    cursor = s.cursor();
+    int j = 0;
+    long integer = 0L;
+    while (true) {
+      // Skip forward by a random distance, sometimes landing inside the current bucket.
+      integer += (long) (Math.random() * (Math.random() < 0.5 ? 2000 : 2000000));
+      while (j < length && monotoneSequence[j] < integer) {
+        j++;
+      }
+      if (j == length) {
+        assertEquals(cursor.advanceTo(integer), -1L);
+        assertEquals(cursor.position(), length);
+        break;
+      }
+      assertEquals(cursor.advanceTo(integer), (long) monotoneSequence[j]);
+      assertEquals(cursor.value(), (long) monotoneSequence[j]);
+      assertEquals(cursor.position(), j);
+      if (Math.random() < 0.5 && j + 1 < length) {
+        assertEquals(cursor.next(), (long) monotoneSequence[++j]);
+        integer = monotoneSequence[j];
+      }
+    }
+  }
+
+  @Test
+  public void testRank() {
+    final int length = 20000;
+    final long[] values = duplicatesSequenceGenerator(length, 50);
+
+    EliasFanoAppendOnlyMonotoneLongSequence s = new EliasFanoAppendOnlyMonotoneLongSequence(64);
+    for (int i = 0; i < length; i++) {
+      s.addLong(values[i]);
+    }
+
+    int j = 0;
+    for (long x = 0; x <= values[length - 1] + 1; x++) {
+      while (j < length && values[j] < x) {
+        j++;
+      }
+      assertEquals(s.rank(x), j);
+      assertEquals(s.nextGEQIndex(x), j < length ? j : -1);
+    }
+
+    for (int i = 0; i < length; i++) {
+      int first = i;
+      while (first > 0 && values[first - 1] == values[i]) {
+        first--;
+      }
+      int last = i;
+      while (last < length - 1 && values[last + 1] == values[i]) {
+        last++;
+      }
+      assertEquals(s.indexOf(values[i]), first);
+      assertEquals(s.lastIndexOf(values[i]), last);
+    }
+    assertEquals(s.indexOf(values[length - 1] + 1), -1);
+    assertEquals(s.lastIndexOf(values[length - 1] + 1), -1);
+    assertEquals(s.indexOf(Integer.valueOf((int) values[0])), -1);
+    assertEquals(s.lastIndexOf(Integer.valueOf((int) values[0])), -1);
+  }
+
+  @Test
+  public void testPrevLEQAndCount() {
+    final int length = 20000;
+    final long[] values = duplicatesSequenceGenerator(length, 50);
+
+    EliasFanoAppendOnlyMonotoneLongSequence s = new EliasFanoAppendOnlyMonotoneLongSequence(64);
+    for (int i = 0; i < length; i++) {
+      s.addLong(values[i]);
+    }
+
+    int j = -1;
+    for (long x = -1; x <= values[length - 1] + 1; x++) {
+      while (j + 1 < length && values[j + 1] <= x) {
+        j++;
+      }
+      assertEquals(s.prevLEQ(x), j >= 0 ? values[j] : -1L);
+    }
+
+    for (int k = 0; k < 10000; k++) {
+      final long lo = (long) (Math.random() * values[length - 1]);
+      final long hi = lo + (long) (Math.random() * 1000);
+      int count = 0;
+      for (int i = 0; i < length; i++) {
+        if (lo <= values[i] && values[i] <= hi) {
+          count++;
+        }
+      }
+      assertEquals(s.count(lo, hi), count);
+    }
+    assertEquals(s.count(0, values[length - 1]), length);
+    assertEquals(s.count(1, 0), 0);
+  }
+
+  @Test
+  public void testValueRangeIterator() {
+    final int length = 20000;
+    final long[] values = duplicatesSequenceGenerator(length, 50);
+
+    EliasFanoAppendOnlyMonotoneLongSequence s = new EliasFanoAppendOnlyMonotoneLongSequence(64);
+    for (int i = 0; i < length; i++) {
+      s.addLong(values[i]);
+    }
+
+    for (int k = 0; k < 1000; k++) {
+      final long lo = (long) (Math.random() * (values[length - 1] + 10)) - 5;
+      final long hi = lo + (long) (Math.random() * 5000);
+      LongIterator it = s.valueRangeIterator(lo, hi);
+      for (int i = 0; i < length; i++) {
+        if (lo <= values[i] && values[i] <= hi) {
+          assertEquals(it.nextLong(), values[i]);
+        }
+      }
+      assertFalse(it.hasNext());
+    }
+    assertFalse(s.valueRangeIterator(values[length - 1] + 1, Long.MAX_VALUE).hasNext());
+    assertFalse(s.valueRangeIterator(10, 9).hasNext());
+  }
+
+  @Test
+  public void testDecode() {
+    final int length = 20000;
+    final int[] maxGaps = {1, 50, 1 << 20};
+
+    for (int maxGap : maxGaps) {
+      final long[] values = duplicatesSequenceGenerator(length, maxGap);
+      EliasFanoAppendOnlyMonotoneLongSequence s = new EliasFanoAppendOnlyMonotoneLongSequence(100);
+      for (int i = 0; i < length; i++) {
+        s.addLong(values[i]);
+      }
+
+      final long[] dest = new long[length + 10];
+      for (int k = 0; k < 1000; k++) {
+        final int from = (int) (Math.random() * length);
+        final int count = (int) (Math.random() * (length - from + 1));
+        s.decode(from, dest, 10, count);
+        for (int i = 0; i < count; i++) {
+          assertEquals(dest[10 + i], values[from + i]);
+        }
+      }
+
+      MonotoneLongSequenceBlockIterator it = s.blockIterator();
+      final int blockSize = (int) (Math.random() * 300) + 1;
+      int i = 0;
+      while (it.hasNext()) {
+        final int n = it.next(dest, 0, blockSize);
+        for (int j = 0; j < n; j++) {
+          assertEquals(dest[j], values[i++]);
+        }
+      }
+      assertEquals(i, length);
+      assertEquals(it.next(dest, 0, blockSize), 0);
+    }
+  }
+
+  @Test
+  public void testSpliterator() {
+    final int length = 200000;
+    final long[] values = duplicatesSequenceGenerator(length, 50);
+    EliasFanoAppendOnlyMonotoneLongSequence s = new EliasFanoAppendOnlyMonotoneLongSequence(100);
+    for (int i = 0; i < length; i++) {
+      s.addLong(values[i]);
+    }
+
+    Spliterator.OfLong spliterator = s.spliterator();
+    assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED | Spliterator.SORTED
+        | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL));
+    assertEquals(spliterator.estimateSize(), length);
+    Spliterator.OfLong prefix = spliterator.trySplit();
+    assertEquals(prefix.estimateSize() % 100, 0);
+    assertEquals(prefix.estimateSize() + spliterator.estimateSize(), length);
+
+    assertArrayEquals(s.longStream().toArray(), values);
+    assertArrayEquals(s.parallelLongStream().toArray(), values);
+    assertEquals(s.parallelLongStream().sum(), s.longStream().sum());
+  }
+
+  @Test
+  public void testAddLongs() {
+    final int length = 20000;
+    final long[] values = duplicatesSequenceGenerator(length, 50);
+    EliasFanoAppendOnlyMonotoneLongSequence s = new EliasFanoAppendOnlyMonotoneLongSequence(100);
+    int i = 0;
+    while (i < length) {
+      final int n = Math.min(length - i, (int) (Math.random() * 300));
+      s.addLongs(values, i, n);
+      i += n;
+    }
+    assertEquals(s.size(), length);
+    assertArrayEquals(s.longStream().toArray(), values);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddLongsNotMonotone() {
+    EliasFanoAppendOnlyMonotoneLongSequence s = new EliasFanoAppendOnlyMonotoneLongSequence(4);
+    s.addLongs(new long[] {1, 2, 3, 4, 5, 4}, 0, 6);
+  }
+
+  @Test
+  public void testBuild() {
+    final int[] lengths = {0, 1, 8, 9, 20000};
+    for (int length : lengths) {
+      final long[] values = duplicatesSequenceGenerator(length, 50);
+
+      EliasFanoAppendOnlyMonotoneLongSequence s =
+          EliasFanoAppendOnlyMonotoneLongSequence.build(values);
+      assertEquals(s.size(), length);
+      assertArrayEquals(s.longStream().toArray(), values);
+      for (int i = 0; i < length; i++) {
+        assertEquals(s.getLong(i), values[i]);
+        assertEquals(s.nextGEQLong(values[i]), values[i]);
+      }
+      final long last = length > 0 ? values[length - 1] : 0;
+      s.addLong(last + 1);
+      assertEquals(s.getLong(length), last + 1);
+
+      s = EliasFanoAppendOnlyMonotoneLongSequence.build(LongStream.of(values));
+      assertArrayEquals(s.longStream().toArray(), values);
+      s = EliasFanoAppendOnlyMonotoneLongSequence.build(LongStream.of(values).filter(v -> v >= 0));
+      assertArrayEquals(s.longStream().toArray(), values);
+      s = EliasFanoAppendOnlyMonotoneLongSequence.build(s.iterator(), length / 2);
+      assertArrayEquals(s.longStream().toArray(), values);
+    }
+
+    final long[] values = duplicatesSequenceGenerator(1000, 50);
+    EliasFanoAppendOnlyMonotoneLongSequence s =
+        EliasFanoAppendOnlyMonotoneLongSequence.build(values, 100, 500);
+    assertArrayEquals(s.longStream().toArray(), Arrays.copyOfRange(values, 100, 600));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBuildNotMonotone() {
+    EliasFanoAppendOnlyMonotoneLongSequence.build(new long[] {1, 2, 3, 2});
+  }
+
+  @Test
+  public void testParallelBuild() {
+    final int length = 1000000;
+    final long[] values = duplicatesSequenceGenerator(length, 1000);
+
+    EliasFanoAppendOnlyMonotoneLongSequence s =
+        EliasFanoAppendOnlyMonotoneLongSequence.parallelBuild(values);
+    EliasFanoAppendOnlyMonotoneLongSequence t =
+        EliasFanoAppendOnlyMonotoneLongSequence.build(values);
+    assertEquals(s.size(), length);
+    assertEquals(s.bits(), t.bits());
+    assertArrayEquals(s.longStream().toArray(), values);
+    for (int k = 0; k < 10000; k++) {
+      final int i = (int) (Math.random() * length);
+      assertEquals(s.getLong(i), values[i]);
+      assertEquals(s.nextGEQLong(values[i] + 1), t.nextGEQLong(values[i] + 1));
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(3);
+    s = EliasFanoAppendOnlyMonotoneLongSequence.parallelBuild(values, 10, 5000, pool);
+    pool.shutdown();
+    assertArrayEquals(s.longStream().toArray(), Arrays.copyOfRange(values, 10, 5010));
+  }
+
+  @Test
+  public void testOptimizeSearch() {
+    final int length = 20000;
+    final long[] values = duplicatesSequenceGenerator(2 * length, 50);
+
+    EliasFanoAppendOnlyMonotoneLongSequence s = new EliasFanoAppendOnlyMonotoneLongSequence(32);
+    EliasFanoAppendOnlyMonotoneLongSequence t = new EliasFanoAppendOnlyMonotoneLongSequence(32);
+    for (int i = 0; i < length; i++) {
+      s.addLong(values[i]);
+      t.addLong(values[i]);
+    }
+    s.optimizeSearch();
+    assertEquals(s.searchEpsilon(), -1);
+    for (int i = length; i < 2 * length; i++) {
+      s.addLong(values[i]);
+      t.addLong(values[i]);
+    }
+
+    for (int k = 0; k < 10000; k++) {
+      final long x = (long) (Math.random() * (values[2 * length - 1] + 10)) - 5;
+      assertEquals(s.nextGEQLong(x), t.nextGEQLong(x));
+      assertEquals(s.rank(x), t.rank(x));
+      assertEquals(s.contains(x), t.contains(x));
+    }
+    assertTrue(s.bits() > t.bits());
+  }
+
+  @Test
+  public void testOptimizeSearchWithModel() {
+    final int length = 20000;
+    final long[] values = duplicatesSequenceGenerator(2 * length, 50);
+
+    for (int epsilon : new int[] {0, 1, 4, 32}) {
+      EliasFanoAppendOnlyMonotoneLongSequence s =
+          new EliasFanoAppendOnlyMonotoneLongSequence(32);
+      EliasFanoAppendOnlyMonotoneLongSequence t =
+          new EliasFanoAppendOnlyMonotoneLongSequence(32);
+      for (int i = 0; i < length; i++) {
+        s.addLong(values[i]);
+        t.addLong(values[i]);
+      }
+      assertEquals(s.searchEpsilon(), -1);
+      assertEquals(s.searchSegments(), 0);
+      s.optimizeSearch(epsilon);
+      assertEquals(s.searchEpsilon(), epsilon);
+      assertTrue(s.searchSegments() > 0);
+      for (int i = length; i < 2 * length; i++) {
+        s.addLong(values[i]);
+        t.addLong(values[i]);
+      }
+
+      for (int k = 0; k < 10000; k++) {
+        final long x = (long) (Math.random() * (values[2 * length - 1] + 10)) - 5;
+        assertEquals(s.nextGEQLong(x), t.nextGEQLong(x));
+        assertEquals(s.rank(x), t.rank(x));
+        assertEquals(s.contains(x), t.contains(x));
+      }
+      assertTrue(s.bits() > t.bits());
+    }
+  }
+
+  // Generates distinct integers alternating runs of consecutive integers, dense stretches and
+  // sparse ones.
+  private long[] denseSequenceGenerator(final int length, final int B) {
+    long[] sequence = new long[length];
+
+    long prevInt = 0L;
+    for (int i = 0; i < length; i++) {
+      switch (i / B % 3) {
+        case 0:
+          prevInt++;
+          break;
+        case 1:
+          prevInt += 1 + (long) (Math.random() * 3);
+          break;
+        default:
+          prevInt += 1 + (long) (Math.random() * 1000);
+      }
+      sequence[i] = prevInt;
+    }
+    return sequence;
+  }
+
+  @Test
+  public void testHybridBuckets() {
+    final int B = 200;
+    final int length = 60 * B + 17;
+    final long[] values = denseSequenceGenerator(length, B);
+    EliasFanoAppendOnlyMonotoneLongSequence s = new EliasFanoAppendOnlyMonotoneLongSequence(B);
+    s.addLongs(values, 0, length);
+
+    int fullRuns = 0;
+    int bitmaps = 0;
+    for (int i = 0; i < s.buckets; i++) {
+      final long code = s.info.array[i] & EliasFanoAppendOnlyMonotoneLongSequence.LOWER_BITS_MASK;
+      if (code == EliasFanoAppendOnlyMonotoneLongSequence.FULL_RUN) {
+        fullRuns++;
+      } else if (code == EliasFanoAppendOnlyMonotoneLongSequence.BITMAP) {
+        bitmaps++;
+      }
+    }
+    assertTrue(fullRuns > 0);
+    assertTrue(bitmaps > 0);
+    assertTrue(fullRuns + bitmaps < s.buckets);
+
+    for (int i = 0; i < length; i++) {
+      assertEquals(s.getLong(i), values[i]);
+    }
+    assertArrayEquals(s.longStream().toArray(), values);
+    assertArrayEquals(s.freeze().longStream().toArray(), values);
+    assertArrayEquals(s.clone().longStream().toArray(), values);
+
+    LongIterator it = s.iterator();
+    for (int i = 0; i < length; i++) {
+      assertEquals(it.nextLong(), values[i]);
+    }
+    for (int k = 0; k < 100; k++) {
+      final int from = (int) (Math.random() * length);
+      final int to = from + (int) (Math.random() * (length - from));
+      it = s.iterator(from, to);
+      for (int i = from; i <= to; i++) {
+        assertEquals(it.nextLong(), values[i]);
+      }
+    }
+
+    MonotoneLongSequenceCursor cursor = s.cursor();
+    for (long x = -1; x <= values[length - 1] + 1; x++) {
+      int rank = Arrays.binarySearch(values, x);
+      rank = rank < 0 ? -rank - 1 : rank;
+      assertEquals(s.rank(x), rank);
+      assertEquals(s.nextGEQLong(x), rank < length ? values[rank] : -1L);
+      assertEquals(s.contains(x), rank < length && values[rank] == x);
+      assertEquals(cursor.advanceTo(x), rank < length ? values[rank] : -1L);
+    }
+  }
+
+  // Generates integers with small gaps, including duplicates, and a few large outliers.
+  private long[] outliersSequenceGenerator(final int length, final int maxGap) {
+    long[] sequence = new long[length];
+
+    long prevInt = 0L;
+    for (int i = 0; i < length; i++) {
+      prevInt += Math.random() < 0.02 ? (long) (Math.random() * (1L << 40))
+          : (long) (Math.random() * maxGap);
+      sequence[i] = prevInt;
+    }
+    return sequence;
+  }
+
+  @Test
+  public void testPackedBuckets() {
+    final int[] bucketSizes = {1, 63, 64, 65, 200, 1000};
+    final int[] maxGaps = {1, 2, 100};
+
+    for (int B : bucketSizes) {
+      for (int maxGap : maxGaps) {
+        final int length = 20 * B + (int) (Math.random() * B);
+        final long[] values = outliersSequenceGenerator(length, maxGap);
+        EliasFanoAppendOnlyMonotoneLongSequence s =
+            new EliasFanoAppendOnlyMonotoneLongSequence(B, true);
+        s.addLongs(values, 0, length);
+        for (int i = 0; i < s.buckets; i++) {
+          final long code =
+              s.info.array[i] & EliasFanoAppendOnlyMonotoneLongSequence.LOWER_BITS_MASK;
+          assertTrue(code == EliasFanoAppendOnlyMonotoneLongSequence.PACKED
+              || code == EliasFanoAppendOnlyMonotoneLongSequence.PROGRESSION
+              || code == EliasFanoAppendOnlyMonotoneLongSequence.RUNS);
+        }
+
+        for (int i = 0; i < length; i++) {
+          assertEquals(s.getLong(i), values[i]);
+        }
+        assertArrayEquals(s.longStream().toArray(), values);
+        assertArrayEquals(s.freeze().longStream().toArray(), values);
+        assertArrayEquals(s.clone().longStream().toArray(), values);
+
+        LongIterator it = s.iterator();
+        for (int i = 0; i < length; i++) {
+          assertEquals(it.nextLong(), values[i]);
+        }
+        for (int k = 0; k < 20; k++) {
+          final int from = (int) (Math.random() * length);
+          final int to = from + (int) (Math.random() * (length - from));
+          it = s.iterator(from, to);
+          for (int i = from; i <= to; i++) {
+            assertEquals(it.nextLong(), values[i]);
+          }
+        }
+
+        MonotoneLongSequenceCursor cursor = s.cursor();
+        for (int k = 0; k < 2000; k++) {
+          final long x =
+              k < 1000 ? values[(int) (Math.random() * length)] + (long) (Math.random() * 3) - 1
+                  : (long) (Math.random() * (values[length - 1] + 10)) - 5;
+          int rank = Arrays.binarySearch(values, x);
+          if (rank < 0) {
+            rank = -rank - 1;
+          } else {
+            while (rank > 0 && values[rank - 1] == x) {
+              rank--;
+            }
+          }
+          assertEquals(s.rank(x), rank);
+          assertEquals(s.nextGEQLong(x), rank < length ? values[rank] : -1L);
+        }
+        for (int i = 0; i < length; i += 1 + (int) (Math.random() * 10)) {
+          assertEquals(cursor.advanceTo(values[i]), values[i]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testProgressionBuckets() {
+    final int B = 256;
+    final int length = 100 * B + 33;
+    final long[] values = new long[length];
+    long timestamp = 1400000000000L;
+    for (int i = 0; i < length; i++) {
+      values[i] = timestamp;
+      timestamp += 1000;
+      if (Math.random() < 0.001) { // jitter, or a missing sample
+        values[i] += Math.random() < 0.5 ? 1 : 1000;
+      }
+    }
+    for (int i = 1; i < length; i++) {
+      values[i] = Math.max(values[i], values[i - 1]);
+    }
+
+    for (boolean packed : new boolean[] {false, true}) {
+      EliasFanoAppendOnlyMonotoneLongSequence s =
+          new EliasFanoAppendOnlyMonotoneLongSequence(B, packed);
+      s.addLongs(values, 0, length);
+      int progressions = 0;
+      for (int i = 0; i < s.buckets; i++) {
+        if ((s.info.array[i] & EliasFanoAppendOnlyMonotoneLongSequence.LOWER_BITS_MASK)
+            == EliasFanoAppendOnlyMonotoneLongSequence.PROGRESSION) {
+          progressions++;
+        }
+      }
+      assertTrue(progressions > s.buckets / 2);
+
+      for (int i = 0; i < length; i++) {
+        assertEquals(s.getLong(i), values[i]);
+      }
+      assertArrayEquals(s.longStream().toArray(), values);
+      assertArrayEquals(s.freeze().longStream().toArray(), values);
+      for (int k = 0; k < 20; k++) {
+        final int from = (int) (Math.random() * length);
+        final int to = from + (int) (Math.random() * (length - from));
+        LongIterator it = s.iterator(from, to);
+        for (int i = from; i <= to; i++) {
+          assertEquals(it.nextLong(), values[i]);
+        }
+      }
+
+      for (int k = 0; k < 20000; k++) {
+        final long x =
+            values[(int) (Math.random() * length)] + (long) (Math.random() * 2002) - 1001;
+        int rank = Arrays.binarySearch(values, x);
+        if (rank < 0) {
+          rank = -rank - 1;
+        } else {
+          while (rank > 0 && values[rank - 1] == x) {
+            rank--;
+          }
+        }
+        assertEquals(s.rank(x), rank);
+        assertEquals(s.nextGEQLong(x), rank < length ? values[rank] : -1L);
+      }
+    }
+  }
+
+  @Test
+  public void testRunBuckets() {
+    final int B = 256;
+    final int length = 100 * B + 77;
+    final long[] values = new long[length];
+    long value = 1000;
+    for (int i = 0; i < length; i++) {
+      if (Math.random() < 0.02) {
+        value += 1 + (long) (Math.random() * 100000);
+      }
+      values[i] = value;
+    }
+
+    for (boolean packed : new boolean[] {false, true}) {
+      EliasFanoAppendOnlyMonotoneLongSequence s =
+          new EliasFanoAppendOnlyMonotoneLongSequence(B, packed);
+      s.addLongs(values, 0, length);
+      int runs = 0;
+      for (int i = 0; i < s.buckets; i++) {
+        if ((s.info.array[i] & EliasFanoAppendOnlyMonotoneLongSequence.LOWER_BITS_MASK)
+            == EliasFanoAppendOnlyMonotoneLongSequence.RUNS) {
+          runs++;
+        }
+      }
+      assertTrue(runs > s.buckets / 2);
+
+      for (int i = 0; i < length; i++) {
+        assertEquals(s.getLong(i), values[i]);
+      }
+      assertArrayEquals(s.longStream().toArray(), values);
+      assertArrayEquals(s.freeze().longStream().toArray(), values);
+      assertArrayEquals(s.clone().longStream().toArray(), values);
+      final long[] decoded = new long[length];
+      s.decode(0, decoded, 0, length);
+      assertArrayEquals(decoded, values);
+      for (int k = 0; k < 20; k++) {
+        final int from = (int) (Math.random() * length);
+        final int to = from + (int) (Math.random() * (length - from));
+        LongIterator it = s.iterator(from, to);
+        for (int i = from; i <= to; i++) {
+          assertEquals(it.nextLong(), values[i]);
+        }
+      }
+
+      for (int k = 0; k < 20000; k++) {
+        final long x = values[(int) (Math.random() * length)] + (long) (Math.random() * 3) - 1;
+        int rank = Arrays.binarySearch(values, x);
+        if (rank < 0) {
+          rank = -rank - 1;
+        } else {
+          while (rank > 0 && values[rank - 1] == x) {
+            rank--;
+          }
+        }
+        int last = rank;
+        while (last < length && values[last] == x) {
+          last++;
+        }
+        assertEquals(s.rank(x), rank);
+        assertEquals(s.nextGEQLong(x), rank < length ? values[rank] : -1L);
+        assertEquals(s.indexOf(x), last > rank ? rank : -1);
+        assertEquals(s.lastIndexOf(x), last > rank ? last - 1 : -1);
+      }
+    }
+  }
+
+  @Test
+  public void testColdTier() {
+    final int B = 128;
+    final int length = 60 * B + 45;
+    final long[] values = new long[length];
+    long value = 0;
+    for (int i = 0; i < length; i++) { // clusters of close integers, far apart from each other
+      final double r = Math.random();
+      value += r < 0.01 ? (long) (Math.random() * (1L << 30)) : r < 0.1 ? 2 : 1;
+      values[i] = value;
+    }
+
+    EliasFanoAppendOnlyMonotoneLongSequence s = new EliasFanoAppendOnlyMonotoneLongSequence(B);
+    s.addLongs(values, 0, length - 2 * B);
+    final int hotBits = s.bits();
+    assertTrue(s.freezeCold() > 0);
+    assertEquals(s.freezeCold(), 0);
+    assertTrue(s.bits() < hotBits);
+    s.addLongs(values, length - 2 * B, 2 * B);
+
+    for (int k = 0; k < 2; k++) {
+      for (int i = 0; i < length; i++) {
+        assertEquals(s.getLong(i), values[i]);
+      }
+      assertArrayEquals(s.longStream().toArray(), values);
+      assertArrayEquals(s.freeze().longStream().toArray(), values);
+      assertArrayEquals(s.clone().longStream().toArray(), values);
+      final long[] decoded = new long[length];
+      s.decode(0, decoded, 0, length);
+      assertArrayEquals(decoded, values);
+      for (int j = 0; j < 20; j++) {
+        final int from = (int) (Math.random() * length);
+        final int to = from + (int) (Math.random() * (length - from));
+        LongIterator it = s.iterator(from, to);
+        for (int i = from; i <= to; i++) {
+          assertEquals(it.nextLong(), values[i]);
+        }
+      }
+
+      MonotoneLongSequenceCursor cursor = s.cursor();
+      long x = 0;
+      while (x <= values[length - 1]) {
+        int rank = Arrays.binarySearch(values, x);
+        if (rank < 0) {
+          rank = -rank - 1;
+        }
+        assertEquals(cursor.advanceTo(x), values[rank]);
+        assertEquals(cursor.position(), rank);
+        x += 1 + (long) (Math.random() * (values[length - 1] / 1000));
+      }
+
+      for (int j = 0; j < 20000; j++) {
+        x = values[(int) (Math.random() * length)] + (long) (Math.random() * 5) - 2;
+        int rank = Arrays.binarySearch(values, x);
+        if (rank < 0) {
+          rank = -rank - 1;
+        }
+        assertEquals(s.rank(x), rank);
+        assertEquals(s.nextGEQLong(x), rank < length ? values[rank] : -1L);
+        assertEquals(s.contains(x), rank < length && values[rank] == x);
+      }
+
+      s.thaw();
+    }
+
+    for (int i = 0; i < s.buckets; i++) {
+      assertTrue((s.info.array[i] & EliasFanoAppendOnlyMonotoneLongSequence.LOWER_BITS_MASK)
+          != EliasFanoAppendOnlyMonotoneLongSequence.INTERPOLATIVE);
+    }
+  }
 }
@@ -0,0 +1,255 @@
+package it.unipi.di;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the <tt>EliasFanoCompactMonotoneLongSequence</tt> data type.
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public class EliasFanoCompactMonotoneLongSequenceTest {
+  private long[] duplicatesSequenceGenerator(final int length, final int maxGap) {
+    long[] sequence = new long[length];
+
+    long prevInt = 0L;
+    for (int i = 0; i < length; i++) {
+      prevInt += (long) (Math.random() * maxGap) * (long) (Math.random() * 2);
+      sequence[i] = prevInt;
+    }
+    return sequence;
+  }
+
+  private EliasFanoAppendOnlyMonotoneLongSequence appendOnly(final long[] values, final int B) {
+    EliasFanoAppendOnlyMonotoneLongSequence s = new EliasFanoAppendOnlyMonotoneLongSequence(B);
+    for (long v : values) {
+      s.addLong(v);
+    }
+    return s;
+  }
+
+  @Test
+  public void testAccess() {
+    final int[] maxGaps = {1, 2, 50, 1 << 20};
+    final int[] bucketSizes = {1, 100, 1000};
+
+    for (int maxGap : maxGaps) {
+      for (int B : bucketSizes) {
+        final int length = 20000 + (int) (Math.random() * B);
+        final long[] values = duplicatesSequenceGenerator(length, maxGap);
+        EliasFanoAppendOnlyMonotoneLongSequence t = appendOnly(values, B);
+        EliasFanoCompactMonotoneLongSequence s = t.freeze();
+
+        assertEquals(s.size(), length);
+        for (int i = 0; i < length; i++) {
+          assertEquals(s.getLong(i), values[i]);
+        }
+        assertArrayEquals(s.longStream().toArray(), values);
+        assertArrayEquals(s.parallelLongStream().toArray(), values);
+
+        for (int k = 0; k < 10000; k++) {
+          final long x = (long) (Math.random() * (values[length - 1] + 10)) - 5;
+          assertEquals(s.nextGEQLong(x), t.nextGEQLong(x));
+          assertEquals(s.rank(x), t.rank(x));
+          assertEquals(s.prevLEQ(x), t.prevLEQ(x));
+        }
+        assertEquals(s.nextGEQLong(values[length - 1] + 1), -1L);
+      }
+    }
+  }
+
+  @Test
+  public void testIterator() {
+    final int length = 50000;
+    final long[] values = duplicatesSequenceGenerator(length, 100);
+    EliasFanoCompactMonotoneLongSequence s = appendOnly(values, 128).freeze();
+
+    LongIterator it = s.iterator();
+    for (int i = 0; i < length; i++) {
+      assertEquals(it.nextLong(), values[i]);
+    }
+    assertFalse(it.hasNext());
+
+    for (int k = 0; k < 100; k++) {
+      final int from = (int) (Math.random() * length);
+      final int to = from + (int) (Math.random() * (length - from));
+      it = s.iterator(from, to);
+      for (int i = from; i <= to; i++) {
+        assertEquals(it.nextLong(), values[i]);
+      }
+      assertFalse(it.hasNext());
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    EliasFanoCompactMonotoneLongSequence s =
+        new EliasFanoAppendOnlyMonotoneLongSequence(8).freeze();
+    assertTrue(s.isEmpty());
+    assertFalse(s.iterator().hasNext());
+    assertEquals(s.nextGEQLong(0), -1L);
+    assertEquals(s.rank(0), 0);
+  }
+
+  @Test
+  public void testBits() {
+    final long[] values = duplicatesSequenceGenerator(100000, 100);
+    EliasFanoAppendOnlyMonotoneLongSequence t = appendOnly(values, 32);
+    t.trimToSize();
+    EliasFanoCompactMonotoneLongSequence s = t.freeze();
+    assertTrue(s.bits() > 0);
+    assertTrue(s.bits() < t.bits());
+  }
+
+  @Test
+  public void testCompressedDirectory() {
+    final int[] maxGaps = {1, 50, 1 << 20};
+    final int[] bucketSizes = {1, 8, 64};
+
+    for (int maxGap : maxGaps) {
+      for (int B : bucketSizes) {
+        final int length = 20000 + (int) (Math.random() * B);
+        final long[] values = duplicatesSequenceGenerator(length, maxGap);
+        EliasFanoAppendOnlyMonotoneLongSequence t = appendOnly(values, B);
+        EliasFanoCompactMonotoneLongSequence s = t.freeze(true);
+        assertTrue(s.bits() < t.freeze().bits());
+
+        for (int i = 0; i < length; i++) {
+          assertEquals(s.getLong(i), values[i]);
+        }
+        assertArrayEquals(s.longStream().toArray(), values);
+        final int from = (int) (Math.random() * length);
+        final int to = from + (int) (Math.random() * (length - from));
+        EliasFanoCompactMonotoneLongSequence subList =
+            (EliasFanoCompactMonotoneLongSequence) s.subList(from, to);
+        assertTrue(subList.info == null);
+        LongIterator it = subList.iterator();
+        for (int i = from; i < to; i++) {
+          assertEquals(it.nextLong(), values[i]);
+        }
+
+        for (int k = 0; k < 10000; k++) {
+          final long x = (long) (Math.random() * (values[length - 1] + 10)) - 5;
+          assertEquals(s.nextGEQLong(x), t.nextGEQLong(x));
+          assertEquals(s.rank(x), t.rank(x));
+          assertEquals(s.prevLEQ(x), t.prevLEQ(x));
+        }
+        assertEquals(s.nextGEQLong(values[length - 1] + 1), -1L);
+      }
+    }
+
+    EliasFanoCompactMonotoneLongSequence s =
+        new EliasFanoAppendOnlyMonotoneLongSequence(8).freeze(true);
+    assertTrue(s.isEmpty());
+    assertEquals(s.nextGEQLong(0), -1L);
+  }
+
+  @Test
+  public void testProgressionBuckets() {
+    final int B = 256;
+    final int length = 100 * B + 33;
+    final long[] values = new long[length];
+    long timestamp = 1400000000000L;
+    for (int i = 0; i < length; i++) {
+      values[i] = timestamp;
+      timestamp += 1000;
+      if (Math.random() < 0.001) { // jitter, or a missing sample
+        values[i] += Math.random() < 0.5 ? 1 : 1000;
+      }
+    }
+    for (int i = 1; i < length; i++) {
+      values[i] = Math.max(values[i], values[i - 1]);
+    }
+    EliasFanoAppendOnlyMonotoneLongSequence t = appendOnly(values, B);
+
+    for (boolean compressDirectory : new boolean[] {false, true}) {
+      EliasFanoCompactMonotoneLongSequence s = t.freeze(compressDirectory);
+      if (!compressDirectory) {
+        int progressions = 0;
+        for (int i = 0; i < s.buckets; i++) {
+          if ((s.info[i] & EliasFanoCompactMonotoneLongSequence.LOWER_BITS_MASK)
+              == EliasFanoCompactMonotoneLongSequence.PROGRESSION) {
+            progressions++;
+          }
+        }
+        assertTrue(progressions > s.buckets / 2);
+      }
+
+      for (int i = 0; i < length; i++) {
+        assertEquals(s.getLong(i), values[i]);
+      }
+      assertArrayEquals(s.longStream().toArray(), values);
+      final int from = (int) (Math.random() * length);
+      final int to = from + (int) (Math.random() * (length - from));
+      LongIterator it = s.iterator(from, to);
+      for (int i = from; i <= to; i++) {
+        assertEquals(it.nextLong(), values[i]);
+      }
+
+      for (int k = 0; k < 20000; k++) {
+        final long x =
+            values[(int) (Math.random() * length)] + (long) (Math.random() * 2002) - 1001;
+        assertEquals(s.nextGEQLong(x), t.nextGEQLong(x));
+        assertEquals(s.rank(x), t.rank(x));
+      }
+    }
+  }
+
+  @Test
+  public void testRunBuckets() {
+    final int B = 256;
+    final int length = 100 * B + 77;
+    final long[] values = new long[length];
+    long value = 1000;
+    for (int i = 0; i < length; i++) {
+      if (Math.random() < 0.02) {
+        value += 1 + (long) (Math.random() * 100000);
+      }
+      values[i] = value;
+    }
+    EliasFanoAppendOnlyMonotoneLongSequence t = appendOnly(values, B);
+
+    for (boolean compressDirectory : new boolean[] {false, true}) {
+      EliasFanoCompactMonotoneLongSequence s = t.freeze(compressDirectory);
+      if (!compressDirectory) {
+        int runs = 0;
+        for (int i = 0; i < s.buckets; i++) {
+          if ((s.info[i] & EliasFanoCompactMonotoneLongSequence.LOWER_BITS_MASK)
+              == EliasFanoCompactMonotoneLongSequence.RUNS) {
+            runs++;
+          }
+        }
+        assertTrue(runs > s.buckets / 2);
+      }
+
+      for (int i = 0; i < length; i++) {
+        assertEquals(s.getLong(i), values[i]);
+      }
+      assertArrayEquals(s.longStream().toArray(), values);
+      final int from = (int) (Math.random() * length);
+      final int to = from + (int) (Math.random() * (length - from));
+      LongIterator it = s.iterator(from, to);
+      for (int i = from; i <= to; i++) {
+        assertEquals(it.nextLong(), values[i]);
+      }
+
+      for (int k = 0; k < 20000; k++) {
+        final long x = (long) (Math.random() * (values[length - 1] + 10)) - 5;
+        assertEquals(s.nextGEQLong(x), t.nextGEQLong(x));
+        assertEquals(s.rank(x), t.rank(x));
+      }
+    }
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testAddLong() {
+    EliasFanoCompactMonotoneLongSequence s = appendOnly(new long[] {1, 2, 3}, 2).freeze();
+    s.addLong(4);
+  }
+}
@@ -0,0 +1,73 @@
+package it.unipi.di;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the <tt>EliasFanoDirectory</tt> data type.
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public class EliasFanoDirectoryTest {
+  // Returns the position of the first key greater than or equal to the given integer.
+  private int lowerBound(final long[] keys, final long integer) {
+    int i = 0;
+    while (i < keys.length && keys[i] < integer) {
+      i++;
+    }
+    return i;
+  }
+
+  @Test
+  public void testLowerBound() {
+    for (int size = 0; size < 300; size++) {
+      long[] keys = new long[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = (long) (Math.random() * size * 2);
+      }
+      Arrays.sort(keys);
+
+      EliasFanoDirectory directory = new EliasFanoDirectory(keys, new long[size], size);
+      assertEquals(directory.size(), size);
+      for (long x = -1; x <= size * 2 + 1; x++) {
+        assertEquals(directory.lowerBound(x), lowerBound(keys, x));
+      }
+    }
+  }
+
+  @Test
+  public void testGetAndCode() {
+    final int size = 100000;
+    final long[] keys = new long[size];
+    final long[] codes = new long[size];
+    long key = 0;
+    for (int i = 0; i < size; i++) {
+      key += (long) (Math.random() * (Math.random() < 0.01 ? 1L << 40 : 1000));
+      keys[i] = key;
+      codes[i] = (long) (Math.random() * 64);
+    }
+
+    EliasFanoDirectory directory = new EliasFanoDirectory(keys, codes, size);
+    for (int i = 0; i < size; i++) {
+      assertEquals(directory.get(i), keys[i]);
+      assertEquals(directory.code(i), codes[i]);
+    }
+    for (int k = 0; k < 10000; k++) {
+      final long x = (long) (Math.random() * (key + 2));
+      int rank = Arrays.binarySearch(keys, x);
+      if (rank < 0) {
+        rank = -rank - 1;
+      } else {
+        while (rank > 0 && keys[rank - 1] == x) {
+          rank--;
+        }
+      }
+      assertEquals(directory.lowerBound(x), rank);
+    }
+    assertTrue(directory.bits() < size * Long.SIZE);
+  }
+}
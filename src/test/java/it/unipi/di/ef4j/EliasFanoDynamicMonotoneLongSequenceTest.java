@@ -12,6 +12,8 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
 import org.junit.Test;
 
 /**
@@ -221,6 +223,22 @@ public class EliasFanoDynamicMonotoneLongSequenceTest {
     }
   }
 
+  @Test
+  public void testIteratorFromTo() {
+    buildSequence();
+    s.dynamize();
+
+    for (int k = 0; k < 100; k++) {
+      final int from = (int) (Math.random() * length);
+      final int to = Math.min(length - 1, from + (int) (Math.random() * 100000));
+      LongIterator it = s.iterator(from, to);
+      for (int i = from; i <= to; i++) {
+        assertEquals(it.nextLong(), (long) monotoneSequence[i]);
+      }
+      assertFalse(it.hasNext());
+    }
+  }
+
   @Test
   public void testNextGEQ() {
     buildSequence();
@@ -460,4 +478,284 @@ public class EliasFanoDynamicMonotoneLongSequenceTest {
     s.add(s.s.last);
     assertEquals(s.lastIndexOf(s.s.last), s.size() - 1);
   }
+
+  @Test
+  public void testPrimitiveAccess() {
+    buildSequence();
+    s.dynamize();
+    LongIterator it = s.iterator();
+    for (int i = 0; i < s.size(); i++) {
+      assertEquals(s.getLong(i), (long) monotoneSequence[i]);
+      assertEquals(it.nextLong(), (long) monotoneSequence[i]);
+    }
+    assertFalse(it.hasNext());
+
+    final long last = s.s.last;
+    s.addLong(last + 7);
+    assertEquals(s.nextGEQLong(last + 1), last + 7);
+    assertTrue(s.contains(last + 7));
+    assertFalse(s.contains(last + 6));
+  }
+
+  @Test
+  public void testRank() {
+    buildSequence();
+    s.dynamize();
+
+    for (int k = 0; k < 10000; k++) {
+      final int i = (int) (Math.random() * length);
+      final long integer = monotoneSequence[i];
+      assertEquals(s.rank(integer), i);
+      assertEquals(s.rank(integer + 1), i + 1);
+      assertEquals(s.nextGEQIndex(integer), i);
+      assertEquals(s.indexOf(integer), i);
+      assertEquals(s.lastIndexOf(integer), i);
+    }
+    assertEquals(s.rank(0L), 0);
+    assertEquals(s.rank(monotoneSequence[length - 1] + 1), length);
+    assertEquals(s.nextGEQIndex(monotoneSequence[length - 1] + 1), -1);
+    assertEquals(s.indexOf(monotoneSequence[length - 1] + 1), -1);
+  }
+
+  @Test
+  public void testPrevLEQAndCount() {
+    buildSequence();
+    s.dynamize();
+
+    for (int k = 0; k < 10000; k++) {
+      final int i = (int) (Math.random() * (length - 1));
+      final long integer = monotoneSequence[i];
+      assertEquals(s.prevLEQ(integer), integer);
+      assertEquals(s.prevLEQ(monotoneSequence[i + 1] - 1), integer);
+      assertEquals(s.count(integer, monotoneSequence[i + 1]), 2);
+      assertEquals(s.count(integer + 1, monotoneSequence[i + 1] - 1), 0);
+    }
+    assertEquals(s.prevLEQ(monotoneSequence[0] - 1), -1L);
+    assertEquals(s.prevLEQ(Long.MAX_VALUE), (long) monotoneSequence[length - 1]);
+    assertEquals(s.count(0L, Long.MAX_VALUE), length);
+  }
+
+  @Test
+  public void testValueRangeIterator() {
+    buildSequence();
+    s.dynamize();
+
+    for (int k = 0; k < 100; k++) {
+      final int from = (int) (Math.random() * length);
+      final int to = Math.min(length - 1, from + (int) (Math.random() * 100000));
+      LongIterator it = s.valueRangeIterator(from > 0 ? monotoneSequence[from - 1] + 1 : 0,
+          monotoneSequence[to]);
+      for (int i = from; i <= to; i++) {
+        assertEquals(it.nextLong(), (long) monotoneSequence[i]);
+      }
+      assertFalse(it.hasNext());
+    }
+    assertFalse(s.valueRangeIterator(monotoneSequence[length - 1] + 1, Long.MAX_VALUE).hasNext());
+  }
+
+  @Test
+  public void testDecode() {
+    buildSequence();
+    s.dynamize();
+
+    final long[] dest = new long[100000];
+    for (int k = 0; k < 100; k++) {
+      final int from = (int) (Math.random() * length);
+      final int count = Math.min(length - from, (int) (Math.random() * dest.length));
+      s.decode(from, dest, 0, count);
+      for (int i = 0; i < count; i++) {
+        assertEquals(dest[i], (long) monotoneSequence[from + i]);
+      }
+    }
+
+    MonotoneLongSequenceBlockIterator it = s.blockIterator();
+    int i = 0;
+    while (it.hasNext()) {
+      final int n = it.next(dest, 0, 1000);
+      for (int j = 0; j < n; j++) {
+        assertEquals(dest[j], (long) monotoneSequence[i++]);
+      }
+    }
+    assertEquals(i, length);
+  }
+
+  @Test
+  public void testLongStream() {
+    buildSequence();
+    s.dynamize();
+
+    long sum = 0;
+    for (int i = 0; i < length; i++) {
+      sum += monotoneSequence[i];
+    }
+    assertEquals(s.longStream().sum(), sum);
+    assertEquals(s.parallelLongStream().sum(), sum);
+
+    final long[] values = s.parallelLongStream().toArray();
+    assertEquals(values.length, length);
+    for (int i = 0; i < length; i++) {
+      assertEquals(values[i], (long) monotoneSequence[i]);
+    }
+  }
+
+  @Test
+  public void testOptimizeSearch() {
+    buildSequence();
+    s.dynamize();
+    s.optimizeSearch();
+    buildAdditions();
+    final int length = s.size();
+    for (int i = 0; i < N; i++) {
+      s.add(toAdd[length + i]);
+    }
+
+    long[] expected = toAdd.clone();
+    java.util.Arrays.sort(expected);
+    LongIterator it = s.iterator();
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(it.nextLong(), expected[i]);
+    }
+
+    s.optimizeSearch();
+    for (int i = 0; i < N; i++) {
+      s.remove(toAdd[length + i]);
+    }
+    assertEquals(s.size(), length);
+    for (int k = 0; k < 1000; k++) {
+      final int i = (int) (Math.random() * length);
+      assertEquals(s.nextGEQLong(monotoneSequence[i]), (long) monotoneSequence[i]);
+      assertTrue(s.contains((long) monotoneSequence[i]));
+    }
+  }
+
+  @Test
+  public void testOptimizeSearchWithModel() {
+    buildSequence();
+    s.dynamize();
+    s.optimizeSearch(2);
+    buildAdditions();
+    final int length = s.size();
+    for (int i = 0; i < N; i++) {
+      s.add(toAdd[length + i]);
+    }
+
+    long[] expected = toAdd.clone();
+    java.util.Arrays.sort(expected);
+    LongIterator it = s.iterator();
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(it.nextLong(), expected[i]);
+    }
+
+    s.optimizeSearch(2);
+    for (int i = 0; i < N; i++) {
+      s.remove(toAdd[length + i]);
+    }
+    assertEquals(s.size(), length);
+    for (int k = 0; k < 1000; k++) {
+      final int i = (int) (Math.random() * length);
+      assertEquals(s.nextGEQLong(monotoneSequence[i]), (long) monotoneSequence[i]);
+      assertTrue(s.contains((long) monotoneSequence[i]));
+    }
+  }
+
+  @Test
+  public void testOptimizeSearchAfterSplits() {
+    s = new EliasFanoDynamicMonotoneLongSequence(128);
+    for (long i = 0; i < 128 * 50; i++) {
+      s.add(2 * i);
+    }
+    s.dynamize();
+    s.optimizeSearch();
+    for (long i = 0; i < 128 * 5; i++) {
+      s.add(2 * i + 1);
+    }
+    assertNull(s.s.directory);
+    assertEquals(s.nextGEQLong(1001), 1001);
+    assertNotNull(s.s.directory);
+
+    s.optimizeSearch(1);
+    for (long i = 128 * 10; i < 128 * 15; i++) {
+      s.add(2 * i + 1);
+    }
+    assertNull(s.s.model);
+    assertEquals(s.nextGEQLong(128 * 25 + 1), 128 * 25 + 1);
+    assertNotNull(s.s.model);
+    assertNull(s.s.directory);
+    for (long i = 0; i < 128 * 40; i++) {
+      final boolean added = i < 128 * 10 || i >= 128 * 20 && i < 128 * 30;
+      assertEquals(s.nextGEQLong(i), added ? i : i + i % 2);
+    }
+  }
+
+  @Test
+  public void testDenseBuckets() {
+    final int length = 200000;
+    s = new EliasFanoDynamicMonotoneLongSequence(4096);
+    for (long i = 1; i <= length; i++) {
+      s.add(i);
+    }
+    s.dynamize();
+
+    java.util.TreeSet<Long> expected = new java.util.TreeSet<Long>();
+    for (long i = 1; i <= length; i++) {
+      expected.add(i);
+    }
+    for (int k = 0; k < 20000; k++) {
+      final long x = 1 + (long) (Math.random() * length);
+      if (expected.remove(x)) {
+        s.remove(x);
+      }
+    }
+    for (int k = 0; k < 10000; k++) {
+      final long x = 1 + (long) (Math.random() * length);
+      if (expected.add(x)) {
+        s.add(x);
+      }
+    }
+
+    assertEquals(s.size(), expected.size());
+    LongIterator it = s.iterator();
+    for (long x : expected) {
+      assertEquals(it.nextLong(), x);
+    }
+    for (int k = 0; k < 10000; k++) {
+      final long x = (long) (Math.random() * (length >> 1));
+      assertEquals(s.nextGEQLong(x), (long) expected.ceiling(x));
+    }
+  }
+
+  @Test
+  public void testProgressionBuckets() {
+    final int length = 200000;
+    s = new EliasFanoDynamicMonotoneLongSequence(4096);
+    java.util.TreeSet<Long> expected = new java.util.TreeSet<Long>();
+    for (long i = 0; i < length; i++) {
+      s.add(i * 1000);
+      expected.add(i * 1000);
+    }
+    s.dynamize();
+
+    for (int k = 0; k < 20000; k++) {
+      final long x = (long) (Math.random() * length) * 1000;
+      if (expected.remove(x)) {
+        s.remove(x);
+      }
+    }
+    for (int k = 0; k < 20000; k++) {
+      final long x = (long) (Math.random() * length) * 1000 + (Math.random() < 0.1 ? 500 : 0);
+      if (expected.add(x)) {
+        s.add(x);
+      }
+    }
+
+    assertEquals(s.size(), expected.size());
+    LongIterator it = s.iterator();
+    for (long x : expected) {
+      assertEquals(it.nextLong(), x);
+    }
+    for (int k = 0; k < 10000; k++) {
+      final long x = (long) (Math.random() * (length >> 1) * 1000);
+      assertEquals(s.nextGEQLong(x), (long) expected.ceiling(x));
+    }
+  }
 }
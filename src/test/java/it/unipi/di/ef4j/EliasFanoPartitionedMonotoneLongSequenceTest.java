@@ -0,0 +1,133 @@
+package it.unipi.di;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the <tt>EliasFanoPartitionedMonotoneLongSequence</tt> data type.
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public class EliasFanoPartitionedMonotoneLongSequenceTest {
+  private long[] duplicatesSequenceGenerator(final int length, final int maxGap) {
+    long[] sequence = new long[length];
+
+    long prevInt = 0L;
+    for (int i = 0; i < length; i++) {
+      prevInt += (long) (Math.random() * maxGap) * (long) (Math.random() * 2);
+      sequence[i] = prevInt;
+    }
+    return sequence;
+  }
+
+  // Generates dense runs of consecutive integers separated by large gaps.
+  private long[] clusteredSequenceGenerator(final int length) {
+    long[] sequence = new long[length];
+
+    long prevInt = 0L;
+    int run = 0;
+    for (int i = 0; i < length; i++) {
+      if (run-- == 0) {
+        prevInt += 1 + (long) (Math.random() * (1 << 20));
+        run = (int) (Math.random() * 1000);
+      } else {
+        prevInt += 1 + (long) (Math.random() * 2);
+      }
+      sequence[i] = prevInt;
+    }
+    return sequence;
+  }
+
+  @Test
+  public void testAccess() {
+    final int[] maxGaps = {1, 2, 50, 1 << 20};
+
+    for (int maxGap : maxGaps) {
+      final int length = 20000 + (int) (Math.random() * 1000);
+      final long[] values = duplicatesSequenceGenerator(length, maxGap);
+      EliasFanoAppendOnlyMonotoneLongSequence t =
+          EliasFanoAppendOnlyMonotoneLongSequence.build(values);
+      EliasFanoPartitionedMonotoneLongSequence s =
+          EliasFanoPartitionedMonotoneLongSequence.build(values);
+
+      assertEquals(s.size(), length);
+      for (int i = 0; i < length; i++) {
+        assertEquals(s.getLong(i), values[i]);
+      }
+      assertArrayEquals(s.longStream().toArray(), values);
+      assertArrayEquals(s.parallelLongStream().toArray(), values);
+
+      for (int k = 0; k < 10000; k++) {
+        final long x = (long) (Math.random() * (values[length - 1] + 10)) - 5;
+        assertEquals(s.nextGEQLong(x), t.nextGEQLong(x));
+        assertEquals(s.rank(x), t.rank(x));
+        assertEquals(s.prevLEQ(x), t.prevLEQ(x));
+      }
+      assertEquals(s.nextGEQLong(values[length - 1] + 1), -1L);
+    }
+  }
+
+  @Test
+  public void testIterator() {
+    final int length = 50000;
+    final long[] values = clusteredSequenceGenerator(length);
+    EliasFanoPartitionedMonotoneLongSequence s =
+        EliasFanoPartitionedMonotoneLongSequence.build(values);
+
+    LongIterator it = s.iterator();
+    for (int i = 0; i < length; i++) {
+      assertEquals(it.nextLong(), values[i]);
+    }
+    assertFalse(it.hasNext());
+
+    for (int k = 0; k < 100; k++) {
+      final int from = (int) (Math.random() * length);
+      final int to = from + (int) (Math.random() * (length - from));
+      it = s.iterator(from, to);
+      for (int i = from; i <= to; i++) {
+        assertEquals(it.nextLong(), values[i]);
+      }
+      assertFalse(it.hasNext());
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    EliasFanoPartitionedMonotoneLongSequence s =
+        EliasFanoPartitionedMonotoneLongSequence.build(new long[0]);
+    assertTrue(s.isEmpty());
+    assertFalse(s.iterator().hasNext());
+    assertEquals(s.nextGEQLong(0), -1L);
+    assertEquals(s.rank(0), 0);
+  }
+
+  @Test
+  public void testBits() {
+    final long[] values = clusteredSequenceGenerator(100000);
+    EliasFanoAppendOnlyMonotoneLongSequence t =
+        EliasFanoAppendOnlyMonotoneLongSequence.build(values);
+    t.trimToSize();
+    EliasFanoPartitionedMonotoneLongSequence s =
+        EliasFanoPartitionedMonotoneLongSequence.build(values);
+    assertTrue(s.partitions > 1);
+    assertTrue(s.bits() < t.bits());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotMonotone() {
+    EliasFanoPartitionedMonotoneLongSequence.build(new long[] {1, 3, 2});
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testAddLong() {
+    EliasFanoPartitionedMonotoneLongSequence s =
+        EliasFanoPartitionedMonotoneLongSequence.build(new long[] {1, 2, 3});
+    s.addLong(4);
+  }
+}
@@ -0,0 +1,50 @@
+package it.unipi.di;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the <tt>EytzingerDirectory</tt> data type.
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public class EytzingerDirectoryTest {
+  // Returns the position of the first key greater than or equal to the given integer.
+  private int lowerBound(final long[] keys, final long integer) {
+    int i = 0;
+    while (i < keys.length && keys[i] < integer) {
+      i++;
+    }
+    return i;
+  }
+
+  @Test
+  public void testLowerBound() {
+    for (int size = 0; size < 300; size++) {
+      long[] keys = new long[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = (long) (Math.random() * size * 2);
+      }
+      Arrays.sort(keys);
+
+      EytzingerDirectory directory = new EytzingerDirectory(keys, size);
+      assertEquals(directory.size(), size);
+      for (long x = -1; x <= size * 2 + 1; x++) {
+        assertEquals(directory.lowerBound(x), lowerBound(keys, x));
+      }
+    }
+  }
+
+  @Test
+  public void testPrefix() {
+    final long[] keys = {1, 3, 3, 7, 9, 100};
+    EytzingerDirectory directory = new EytzingerDirectory(keys, 4);
+    assertEquals(directory.lowerBound(3), 1);
+    assertEquals(directory.lowerBound(8), 4);
+    assertEquals(directory.lowerBound(Long.MAX_VALUE), 4);
+    assertEquals(directory.lowerBound(Long.MIN_VALUE), 0);
+  }
+}
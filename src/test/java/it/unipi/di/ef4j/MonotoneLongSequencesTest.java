@@ -0,0 +1,202 @@
+package it.unipi.di;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the <tt>MonotoneLongSequences</tt> static methods.
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public class MonotoneLongSequencesTest {
+  // Generates a sorted array of random integers in between 0 and universe, duplicates included.
+  private long[] sortedGenerator(final int length, final long universe) {
+    long[] values = new long[length];
+    for (int i = 0; i < length; i++) {
+      values[i] = (long) (Math.random() * universe);
+    }
+    Arrays.sort(values);
+    return values;
+  }
+
+  private EliasFanoAppendOnlyMonotoneLongSequence appendOnly(final long[] values) {
+    EliasFanoAppendOnlyMonotoneLongSequence s = new EliasFanoAppendOnlyMonotoneLongSequence(64);
+    for (long v : values) {
+      s.addLong(v);
+    }
+    return s;
+  }
+
+  private EliasFanoAdaptiveAppendOnlyMonotoneLongSequence adaptive(final long[] values) {
+    EliasFanoAdaptiveAppendOnlyMonotoneLongSequence s =
+        new EliasFanoAdaptiveAppendOnlyMonotoneLongSequence(128);
+    for (long v : values) {
+      s.addLong(v);
+    }
+    return s;
+  }
+
+  private EliasFanoDynamicMonotoneLongSequence dynamic(final long[] values) {
+    EliasFanoDynamicMonotoneLongSequence s = new EliasFanoDynamicMonotoneLongSequence(1024);
+    for (long v : values) {
+      s.addLong(v);
+    }
+    s.dynamize();
+    return s;
+  }
+
+  private TreeSet<Long> set(final long[] values) {
+    TreeSet<Long> set = new TreeSet<Long>();
+    for (long v : values) {
+      set.add(v);
+    }
+    return set;
+  }
+
+  @Test
+  public void testIntersection() {
+    for (int k = 0; k < 10; k++) {
+      final long universe = (long) (Math.random() * 100000) + 1000;
+      final long[] a = sortedGenerator(50000, universe);
+      final long[] b = sortedGenerator(20000, universe);
+      final long[] c = sortedGenerator(5000, universe);
+
+      TreeSet<Long> expected = set(a);
+      expected.retainAll(set(b));
+      expected.retainAll(set(c));
+
+      LongIterator it = MonotoneLongSequences.intersectionIterator(appendOnly(a), adaptive(b),
+          dynamic(c));
+      for (long v : expected) {
+        assertEquals(it.nextLong(), v);
+      }
+      assertFalse(it.hasNext());
+
+      EliasFanoAppendOnlyMonotoneLongSequence intersection =
+          MonotoneLongSequences.intersection(adaptive(a), appendOnly(b), appendOnly(c));
+      assertEquals(intersection.size(), expected.size());
+      it = intersection.iterator();
+      for (long v : expected) {
+        assertEquals(it.nextLong(), v);
+      }
+    }
+
+    final long[] a = sortedGenerator(1000, 1000000);
+    assertEquals(MonotoneLongSequences.intersection(appendOnly(a)).size(), set(a).size());
+    assertTrue(MonotoneLongSequences.intersection(appendOnly(a),
+        new EliasFanoAppendOnlyMonotoneLongSequence(8)).isEmpty());
+  }
+
+  @Test
+  public void testUnion() {
+    final long universe = (long) (Math.random() * 100000) + 1000;
+    final long[] a = sortedGenerator(50000, universe);
+    final long[] b = sortedGenerator(20000, universe);
+    final long[] c = sortedGenerator(5000, universe);
+
+    long[] expected = new long[a.length + b.length + c.length];
+    System.arraycopy(a, 0, expected, 0, a.length);
+    System.arraycopy(b, 0, expected, a.length, b.length);
+    System.arraycopy(c, 0, expected, a.length + b.length, c.length);
+    Arrays.sort(expected);
+
+    EliasFanoAppendOnlyMonotoneLongSequence union =
+        MonotoneLongSequences.union(false, dynamic(a), appendOnly(b), adaptive(c),
+            new EliasFanoAppendOnlyMonotoneLongSequence(8));
+    assertArrayEquals(union.longStream().toArray(), expected);
+
+    TreeSet<Long> distinct = set(expected);
+    LongIterator it = MonotoneLongSequences.unionIterator(true, appendOnly(a), adaptive(b),
+        appendOnly(c));
+    for (long v : distinct) {
+      assertEquals(it.nextLong(), v);
+    }
+    assertFalse(it.hasNext());
+
+    // Many small shards.
+    final int shards = 300;
+    AbstractMonotoneLongSequence[] sequences = new AbstractMonotoneLongSequence[shards];
+    TreeSet<Long> all = new TreeSet<Long>();
+    int length = 0;
+    for (int i = 0; i < shards; i++) {
+      final long[] values = sortedGenerator((int) (Math.random() * 200), universe);
+      sequences[i] = appendOnly(values);
+      all.addAll(set(values));
+      length += values.length;
+    }
+    assertEquals(MonotoneLongSequences.union(false, sequences).size(), length);
+    union = MonotoneLongSequences.union(true, sequences);
+    assertEquals(union.size(), all.size());
+    it = union.iterator();
+    for (long v : all) {
+      assertEquals(it.nextLong(), v);
+    }
+    assertTrue(MonotoneLongSequences.union(true).isEmpty());
+  }
+
+  // Returns the integers of a not appearing in b.
+  private long[] difference(final long[] a, final long[] b) {
+    TreeSet<Long> removed = set(b);
+    long[] difference = new long[a.length];
+    int n = 0;
+    for (long v : a) {
+      if (!removed.contains(v)) {
+        difference[n++] = v;
+      }
+    }
+    return Arrays.copyOf(difference, n);
+  }
+
+  @Test
+  public void testDifference() {
+    final long universe = (long) (Math.random() * 100000) + 1000;
+    final long[] a = sortedGenerator(50000, universe);
+    final long[] small = sortedGenerator(10, universe);
+    final long[] large = sortedGenerator(30000, universe);
+
+    EliasFanoAppendOnlyMonotoneLongSequence s = appendOnly(a);
+    assertArrayEquals(MonotoneLongSequences.difference(s, appendOnly(small)).longStream()
+        .toArray(), difference(a, small));
+    assertArrayEquals(MonotoneLongSequences.difference(s, adaptive(large)).longStream().toArray(),
+        difference(a, large));
+    assertArrayEquals(MonotoneLongSequences.difference(adaptive(a), dynamic(large)).longStream()
+        .toArray(), difference(a, large));
+
+    // Removing integers from the tail only: all compressed buckets are copied verbatim.
+    final long[] tail = {a[a.length - 1], universe + 1};
+    EliasFanoAppendOnlyMonotoneLongSequence d =
+        MonotoneLongSequences.difference(s, appendOnly(tail));
+    assertArrayEquals(d.longStream().toArray(), difference(a, tail));
+    d.addLong(universe + 2);
+    assertEquals(d.getLong(d.size() - 1), universe + 2);
+
+    // Removing as many integers as a bucket holds: the following buckets are realigned and copied
+    // verbatim, after encoding anew at most one of them.
+    final long[] c = new long[64 * 100];
+    for (int i = 0; i < c.length; i++) {
+      c[i] = 3L * i;
+    }
+    EliasFanoAppendOnlyMonotoneLongSequence t = appendOnly(c);
+    final long[] bucket = Arrays.copyOfRange(c, 640, 704);
+    d = MonotoneLongSequences.difference(t, appendOnly(bucket));
+    assertArrayEquals(d.longStream().toArray(), difference(c, bucket));
+    assertSame(d.lowerBits.get(0), t.lowerBits.get(0));
+    assertSame(d.lowerBits.get(11), t.lowerBits.get(12));
+    final long[] span = Arrays.copyOfRange(c, 600, 664);
+    d = MonotoneLongSequences.difference(t, appendOnly(span));
+    assertArrayEquals(d.longStream().toArray(), difference(c, span));
+    assertSame(d.lowerBits.get(10), t.lowerBits.get(11));
+    assertEquals(d.nextGEQLong(c[599] + 1), c[664]);
+    assertEquals(d.rank(c[704]), 640);
+
+    assertEquals(MonotoneLongSequences.difference(s, new EliasFanoAppendOnlyMonotoneLongSequence(8))
+        .size(), a.length);
+    assertTrue(MonotoneLongSequences.difference(s, s).isEmpty());
+  }
+}
@@ -0,0 +1,72 @@
+package it.unipi.di;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the <tt>PiecewiseLinearDirectory</tt> data type.
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public class PiecewiseLinearDirectoryTest {
+  // Returns the position of the first key greater than or equal to the given integer.
+  private int lowerBound(final long[] keys, final long integer) {
+    int i = 0;
+    while (i < keys.length && keys[i] < integer) {
+      i++;
+    }
+    return i;
+  }
+
+  @Test
+  public void testPredict() {
+    for (int epsilon : new int[] {0, 1, 3, 16}) {
+      for (int size = 0; size < 300; size++) {
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+          keys[i] = (long) (Math.random() * size * 100);
+        }
+        Arrays.sort(keys);
+        for (int i = 1; i < size; i++) { // no duplicates
+          keys[i] = Math.max(keys[i], keys[i - 1] + 1);
+        }
+
+        PiecewiseLinearDirectory directory = new PiecewiseLinearDirectory(keys, size, epsilon);
+        assertEquals(directory.size(), size);
+        assertEquals(directory.epsilon(), epsilon);
+        for (long x = -1; x <= (size + 1) * 100; x += 7) {
+          final int position = lowerBound(keys, x);
+          final int segment = directory.segment(x);
+          if (segment < 0) {
+            assertEquals(position, 0);
+          } else {
+            assertTrue(position > directory.start(segment));
+            assertTrue(position <= directory.start(segment + 1));
+            assertTrue(Math.abs(directory.predict(segment, x) - position) <= epsilon + 1);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSegments() {
+    final int size = 10000;
+    long[] keys = new long[size];
+    for (int i = 0; i < size; i++) {
+      keys[i] = i * 1000L + (long) (Math.random() * 100);
+    }
+    PiecewiseLinearDirectory directory = new PiecewiseLinearDirectory(keys, size, 1);
+    assertEquals(directory.segments(), 1);
+    assertTrue(directory.bits() < 256);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeEpsilon() {
+    new PiecewiseLinearDirectory(new long[0], 0, -1);
+  }
+}
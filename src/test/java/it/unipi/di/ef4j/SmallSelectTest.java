@@ -0,0 +1,74 @@
+package it.unipi.di;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.sux4j.bits.SimpleSelect;
+import it.unimi.dsi.sux4j.bits.SimpleSelectZero;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the <tt>SmallSelect</tt> data type.
+ * 
+ * @author Giulio Ermanno Pibiri
+ */
+public class SmallSelectTest {
+  private LongArrayBitVector randomBitVector(final int length, final double density) {
+    LongArrayBitVector v = LongArrayBitVector.getInstance().length(length);
+    for (int i = 0; i < length; i++) {
+      if (Math.random() < density) {
+        v.set(i);
+      }
+    }
+    return v;
+  }
+
+  @Test
+  public void testSelect() {
+    final int[] lengths = {1, 63, 64, 65, 128, 511, 512, 513, 2000, 40000};
+    final double[] densities = {0.01, 0.5, 0.99};
+
+    for (int length : lengths) {
+      for (double density : densities) {
+        LongArrayBitVector v = randomBitVector(length, density);
+        SmallSelect select = new SmallSelect(v);
+        SimpleSelect expected = new SimpleSelect(v);
+        SimpleSelectZero expectedZero = new SimpleSelectZero(v);
+
+        final long ones = v.count();
+        for (long r = 0; r < ones; r++) {
+          assertEquals(select.select(r), expected.select(r));
+        }
+        for (long r = 0; r < length - ones; r++) {
+          assertEquals(select.selectZero(r), expectedZero.selectZero(r));
+        }
+        assertTrue(select.bitVector() == v);
+      }
+    }
+  }
+
+  @Test
+  public void testNumBits() {
+    assertEquals(new SmallSelect(randomBitVector(512, 0.5)).numBits(), 0);
+    assertEquals(new SmallSelect(randomBitVector(513, 0.5)).numBits(), 2 * Integer.SIZE);
+  }
+
+  @Test
+  public void testRank() {
+    final int[] lengths = {1, 63, 64, 65, 511, 512, 513, 2000, 40000};
+
+    for (int length : lengths) {
+      LongArrayBitVector v = randomBitVector(length, 0.5);
+      SmallSelect select = new SmallSelect(v);
+      long ones = 0;
+      for (int i = 0; i < length; i++) {
+        assertEquals(select.rank(i), ones);
+        if (v.getBoolean(i)) {
+          ones++;
+        }
+      }
+    }
+  }
+}